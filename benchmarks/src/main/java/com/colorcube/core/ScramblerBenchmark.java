@@ -0,0 +1,45 @@
+package com.colorcube.core;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.colorcube.model.Move;
+
+/**
+ * 20-move random scrambles: the {@code List<Move>} the UI asks for, against
+ * filling a caller's buffer with move ordinals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScramblerBenchmark {
+    private static final int LENGTH = 20;
+
+    private final byte[] ordinals = new byte[LENGTH];
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Benchmark
+    public List<Move> generateScramble() {
+        return Scrambler.generateScramble(LENGTH);
+    }
+
+    @Benchmark
+    public byte[] fill() {
+        Scrambler.fill(ordinals, 0, LENGTH, random);
+        return ordinals;
+    }
+}
@@ -0,0 +1,59 @@
+package com.colorcube.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.colorcube.core.Scrambler;
+
+/**
+ * Moves, undo and the facelet string on a scrambled cube. Moves are undone
+ * again so the history stays the length of the scramble.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CubeModelBenchmark {
+    private static final Move[] MOVES = Move.values();
+
+    private final CubeModel model = new CubeModel();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (Move move : Scrambler.generateScramble(20))
+            model.applyMove(move);
+    }
+
+    @Benchmark
+    public long applyMoveUndo() {
+        model.applyMove(MOVES[next++ % MOVES.length]);
+        model.undo();
+        return model.stateHash();
+    }
+
+    // Cursor moves only; the facelets are turned back and forth
+    @Benchmark
+    public long undoRedo() {
+        model.undo();
+        model.redo();
+        return model.stateHash();
+    }
+
+    @Benchmark
+    public String getFaceletString() {
+        return model.getFaceletString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.colorcube.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Painter's sort of all 162 cubie quads at the default camera: the old
+ * {@code FaceletQuad} path, which re-projects both quads on every
+ * comparison, against projecting each vertex once and sorting packed depth
+ * keys with {@link DepthSort}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepthSortBenchmark {
+    private double pitch = -30;
+    private double yaw = 45;
+
+    private final DepthSort order = new DepthSort(CubeGeometry.QUAD_COUNT);
+    private List<LegacyQuad> legacyQuads;
+
+    @Setup
+    public void setUp() {
+        double[] v = CubeGeometry.VERTICES;
+        legacyQuads = new ArrayList<>();
+        for (int q = 0; q < CubeGeometry.QUAD_COUNT; q++) {
+            double[][] verts = new double[CubeGeometry.VERTS_PER_QUAD][];
+            for (int i = 0; i < verts.length; i++) {
+                int o = (q * CubeGeometry.VERTS_PER_QUAD + i) * 3;
+                verts[i] = new double[] { v[o], v[o + 1], v[o + 2] };
+            }
+            legacyQuads.add(new LegacyQuad(verts));
+        }
+    }
+
+    @Benchmark
+    public List<LegacyQuad> legacyCollectionsSort() {
+        List<LegacyQuad> quads = new ArrayList<>(legacyQuads);
+        Collections.sort(quads);
+        return quads;
+    }
+
+    @Benchmark
+    public int depthKeySort() {
+        double[] v = CubeGeometry.VERTICES;
+        order.clear();
+        for (int q = 0; q < CubeGeometry.QUAD_COUNT; q++) {
+            double sum = 0;
+            for (int i = 0; i < CubeGeometry.VERTS_PER_QUAD; i++) {
+                int o = (q * CubeGeometry.VERTS_PER_QUAD + i) * 3;
+                sum += projectZ(v[o], v[o + 1], v[o + 2]);
+            }
+            order.add(q, sum / 4.0);
+        }
+        order.sort();
+        return order.get(0);
+    }
+
+    // Depth after pitch and yaw, with the per-call trigonometry of the old
+    // Cube3DPanel.project
+    private double projectZ(double x, double y, double z) {
+        double z1 = y * Math.sin(Math.toRadians(pitch)) + z * Math.cos(Math.toRadians(pitch));
+        return -x * Math.sin(Math.toRadians(yaw)) + z1 * Math.cos(Math.toRadians(yaw));
+    }
+
+    // The comparator of the old FaceletQuad: every comparison projects all
+    // eight vertices of the two quads again
+    public final class LegacyQuad implements Comparable<LegacyQuad> {
+        private final double[][] verts;
+
+        LegacyQuad(double[][] verts) {
+            this.verts = verts;
+        }
+
+        @Override
+        public int compareTo(LegacyQuad o) {
+            return Double.compare(o.getTransformedZ(), getTransformedZ());
+        }
+
+        double getTransformedZ() {
+            double sum = 0;
+            for (double[] p : verts)
+                sum += projectZ(p[0], p[1], p[2]);
+            return sum / 4.0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.colorcube.ui;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.colorcube.model.CubeModel;
+import com.colorcube.model.Move;
+
+/**
+ * Headless {@code Cube3DPanel.paintComponent} into a {@link BufferedImage}:
+ * a frame that has to be rendered because the cube changed, and a repaint
+ * served from the frame cache.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PaintBenchmark {
+    @Param({ "600x500", "1920x1080", "3840x2160" })
+    private String size;
+
+    @Param({ "java2d", "software" })
+    private String renderer;
+
+    private final CubeModel model = new CubeModel();
+    private Cube3DPanel panel;
+    private BufferedImage image;
+    private Graphics2D g2;
+    private boolean turned;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int x = size.indexOf('x');
+        int w = Integer.parseInt(size.substring(0, x));
+        int h = Integer.parseInt(size.substring(x + 1));
+        panel = new Cube3DPanel(model);
+        panel.setSize(w, h);
+        panel.setSoftwareRendering("software".equals(renderer));
+        image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        g2 = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    // Turns R and back on alternate calls, so every frame misses the cache
+    @Benchmark
+    public BufferedImage paintChanged() {
+        if (turned)
+            model.undo();
+        else
+            model.applyMove(Move.R);
+        turned = !turned;
+        panel.paintComponent(g2);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintCached() {
+        panel.paintComponent(g2);
+        return image;
+    }
+}
@@ -0,0 +1,178 @@
+package com.colorcube;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.colorcube.core.LatencyHistogram;
+import com.colorcube.core.TwoPhaseSolver;
+import com.colorcube.model.CubieCube;
+import com.colorcube.model.Move;
+
+/**
+ * Headless batch solver.
+ *
+ * Reads one 54-character facelet string per line (the format saved by
+ * {@code DBManager}), solves the states in parallel and writes one line per
+ * input, in input order:
+ * <pre>
+ *   facelets &lt;TAB&gt; length &lt;TAB&gt; moves
+ *   facelets &lt;TAB&gt; ERROR &lt;TAB&gt; reason
+ * </pre>
+ * Only a fixed window of states is in flight at any time, so memory use does
+ * not grow with the input size.
+ *
+ * Each state gets the first solution of at most
+ * {@link TwoPhaseSolver#DEFAULT_MAX_LENGTH} moves, typically within a few
+ * milliseconds. {@code --shortest millis} instead searches each state that
+ * long for the shortest solution it can find.
+ *
+ * Usage: {@code BatchSolver [--shortest millis] <input> <output> [threads]}
+ */
+public class BatchSolver {
+    // In-flight states per worker; enough to keep workers busy while the
+    // writer waits on the oldest result
+    private static final int WINDOW_PER_THREAD = 8;
+
+    private static final ThreadLocal<TwoPhaseSolver> SOLVER = ThreadLocal.withInitial(TwoPhaseSolver::new);
+
+    public static void main(String[] args) {
+        int first = args.length > 0 && args[0].equals("--shortest") ? 2 : 0;
+        int rest = args.length - first;
+        long shortestMillis = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean valid = rest == 2 || rest == 3;
+        try {
+            if (valid && first > 0)
+                shortestMillis = Long.parseLong(args[1]);
+            if (valid && rest == 3)
+                threads = Integer.parseInt(args[first + 2]);
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        if (!valid || shortestMillis < 0) {
+            System.err.println("Usage: BatchSolver [--shortest millis] <input> <output> [threads]");
+            System.exit(2);
+        }
+        try {
+            run(Paths.get(args[first]), Paths.get(args[first + 1]), threads, shortestMillis);
+        } catch (IOException e) {
+            System.err.println("Batch solve failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public static void run(Path input, Path output, int threads) throws IOException {
+        run(input, output, threads, 0);
+    }
+
+    /**
+     * @param shortestMillis time to search each state for its shortest
+     *                       solution, or 0 to take the first one found
+     */
+    public static void run(Path input, Path output, int threads, long shortestMillis) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        TwoPhaseSolver.warmUp();
+
+        LatencyHistogram latency = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        int window = threads * WINDOW_PER_THREAD;
+        long solved = 0, failed = 0;
+        long start = System.nanoTime();
+
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String facelets = line.trim();
+                if (facelets.isEmpty())
+                    continue;
+                if (pending.size() == window) {
+                    if (writeResult(pending.removeFirst(), out))
+                        solved++;
+                    else
+                        failed++;
+                }
+                pending.addLast(pool.submit(() -> solve(facelets, shortestMillis, latency)));
+            }
+            while (!pending.isEmpty()) {
+                if (writeResult(pending.removeFirst(), out))
+                    solved++;
+                else
+                    failed++;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Solved %d states, %d failed, in %.2f s on %d threads: %.1f states/s%n",
+                solved, failed, seconds, threads, (solved + failed) / seconds);
+        System.out.printf("Latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms, mean %.2f ms%n",
+                latency.getPercentile(50) / 1e6, latency.getPercentile(99) / 1e6,
+                latency.getMax() / 1e6, latency.getMean() / 1e6);
+    }
+
+    private static String solve(String facelets, long shortestMillis, LatencyHistogram latency) {
+        long t = System.nanoTime();
+        try {
+            TwoPhaseSolver solver = SOLVER.get();
+            CubieCube cube = CubieCube.fromFacelets(facelets);
+            List<Move> moves = shortestMillis > 0 ? solver.solveShortest(cube, shortestMillis)
+                    : solver.solveFirst(cube, TwoPhaseSolver.DEFAULT_MAX_LENGTH);
+            return facelets + '\t' + solver.getLastLength() + '\t' + format(moves);
+        } catch (IllegalArgumentException e) {
+            return facelets + "\tERROR\t" + e.getMessage();
+        } catch (RuntimeException e) {
+            // A solver bug on one state should not end the whole batch
+            return facelets + "\tERROR\t" + e;
+        } finally {
+            latency.record(System.nanoTime() - t);
+        }
+    }
+
+    // Returns false if the line was an error
+    private static boolean writeResult(Future<String> result, BufferedWriter out) throws IOException {
+        String line;
+        try {
+            line = result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a result", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Solver failed", e.getCause());
+        }
+        out.write(line);
+        out.newLine();
+        return line.indexOf("\tERROR\t") < 0;
+    }
+
+    // Solver half turns come back as two equal quarter turns; print them as X2
+    private static String format(List<Move> moves) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < moves.size(); i++) {
+            if (sb.length() > 0)
+                sb.append(' ');
+            Move m = moves.get(i);
+            if (i + 1 < moves.size() && moves.get(i + 1) == m) {
+                sb.append(m.getFace()).append('2');
+                i++;
+            } else {
+                sb.append(m);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.colorcube.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, thread-safe histogram of non-negative values (typically
+ * nanoseconds). Buckets are log-linear: each power of two is split into 16
+ * equal sub-buckets, so any recorded value is reported within 1/16 (about
+ * 6%) of its true value while the whole range of a long fits in under a
+ * thousand counters.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative value: " + value);
+        counts.incrementAndGet(bucketOf(value));
+        total.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the value at percentile {@code p} (0-100), as the upper bound
+     * of its bucket, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double p) {
+        long n = total.sum();
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank)
+                return Math.min(upperBound(b), max.get());
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++)
+            counts.set(b, 0);
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    // Values below 16 get a bucket each; above that, the exponent picks a
+    // group of 16 and the 4 bits after the leading one pick the sub-bucket
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT)
+            return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT)
+            return bucket;
+        int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        long width = 1L << (exp - SUB_BITS);
+        return ((long) (SUB_COUNT + bucket % SUB_COUNT) << (exp - SUB_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,274 @@
+package com.colorcube.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.colorcube.model.CubeModel;
+import com.colorcube.model.CubieCube;
+import com.colorcube.model.Move;
+
+/**
+ * Optimal (half-turn metric) solver: IDA* with the corner and edge pattern
+ * databases and the phase 1 pruning tables as admissible bounds.
+ *
+ * Each iteration splits the first few ply of the search tree into fork/join
+ * tasks. Workers share the found solution through an atomic reference and
+ * all stop once one is found, since every solution at the current depth is
+ * optimal. Depths are tried in increasing order, so the first solution is
+ * proven optimal.
+ *
+ * The tables (about 65 MB) are generated on first use (under a minute),
+ * then memory-mapped on later launches.
+ *
+ * Only fairly shallow states are practical. On one core a 14-move position
+ * takes a few seconds and a 15-move one under a minute; every further move
+ * costs roughly 13 times more, so the 17-18 moves of a typical random state
+ * mean hours to a day. More cores divide that at best by their number;
+ * that scaling has not been measured.
+ */
+public class OptimalSolver {
+    public static final int MAX_LENGTH = 20; // God's number in half-turn metric
+
+    private static final int SPLIT_DEPTH = 3;
+    // Subtrees shallower than this are cheaper to search than to fork
+    private static final int MIN_FORK_REMAINING = 6;
+
+    private final ForkJoinPool pool;
+
+    public OptimalSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public OptimalSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Builds or maps the tables now, e.g. before timing a batch.
+     */
+    public static void warmUp() {
+        SolverTables.init();
+        OptimalTables.init();
+    }
+
+    /**
+     * Outcome of an optimal solve, with search statistics.
+     */
+    public static final class Result {
+        private final List<Move> moves;
+        private final int length;
+        private final long nodes;
+        private final long elapsedNanos;
+
+        Result(List<Move> moves, int length, long nodes, long elapsedNanos) {
+            this.moves = moves;
+            this.length = length;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * The solution as quarter-turn moves (half turns appear twice), or
+         * null if none exists within the requested length.
+         */
+        public List<Move> getMoves() {
+            return moves;
+        }
+
+        /**
+         * Half-turn length of the solution, or -1 if none was found.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getNodesPerSecond() {
+            return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d moves, %,d nodes in %.3f s (%,.0f nodes/s)",
+                    length, nodes, elapsedNanos / 1e9, getNodesPerSecond());
+        }
+    }
+
+    public Result solve(CubeModel model) {
+        return solve(CubieCube.fromFacelets(model.getFaceletString()), MAX_LENGTH);
+    }
+
+    public Result solve(CubieCube cube) {
+        return solve(cube, MAX_LENGTH);
+    }
+
+    /**
+     * Finds a shortest solution of at most {@code maxLength} half-turn moves.
+     *
+     * @throws IllegalArgumentException if the cube is not solvable
+     */
+    public Result solve(CubieCube cube, int maxLength) {
+        cube.verify();
+        warmUp();
+        long start = System.nanoTime();
+        LongAdder nodes = new LongAdder();
+
+        CubieCube root = new CubieCube();
+        root.set(cube);
+        int cp = root.getCornerPermIndex(), twist = root.getTwist();
+        int flip = root.getFlip(), slice = root.getSlice();
+        long edges = OptimalTables.edges(root);
+
+        for (int bound = heuristic(cp, twist, flip, slice, edges); bound <= maxLength; bound++) {
+            Search search = new Search(root, bound, nodes);
+            pool.invoke(new SearchTask(search, new int[bound], 0, cp, twist, flip, slice, edges, -1));
+            int[] path = search.solution.get();
+            if (path != null) {
+                List<Move> moves = new ArrayList<>();
+                for (int m : path)
+                    SolverTables.appendMoves(moves, m);
+                return new Result(Collections.unmodifiableList(moves), bound, nodes.sum(), System.nanoTime() - start);
+            }
+        }
+        return new Result(null, -1, nodes.sum(), System.nanoTime() - start);
+    }
+
+    private static int heuristic(int cp, int twist, int flip, int slice, long edges) {
+        int h = Math.max(OptimalTables.cornerPrun(cp, twist), OptimalTables.edgePrun(edges));
+        return Math.max(h, Math.max(SolverTables.twistSlicePrun(twist, slice), SolverTables.flipSlicePrun(flip, slice)));
+    }
+
+    // State shared by all tasks of one iteration
+    private static final class Search {
+        final CubieCube root;
+        final int bound;
+        final LongAdder nodes;
+        final AtomicReference<int[]> solution = new AtomicReference<>();
+        volatile boolean stop;
+
+        Search(CubieCube root, int bound, LongAdder nodes) {
+            this.root = root;
+            this.bound = bound;
+            this.nodes = nodes;
+        }
+    }
+
+    private static final class SearchTask extends RecursiveAction {
+        private final Search search;
+        private final int[] path;
+        private final int depth;
+        private final int cp, twist, flip, slice;
+        private final long edges;
+        private final int lastFace;
+
+        private CubieCube scratch;
+        private long nodes;
+
+        SearchTask(Search search, int[] path, int depth, int cp, int twist, int flip, int slice, long edges,
+                int lastFace) {
+            this.search = search;
+            this.path = path;
+            this.depth = depth;
+            this.cp = cp;
+            this.twist = twist;
+            this.flip = flip;
+            this.slice = slice;
+            this.edges = edges;
+            this.lastFace = lastFace;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth < SPLIT_DEPTH && search.bound - depth >= MIN_FORK_REMAINING) {
+                split();
+            } else {
+                dfs(depth, cp, twist, flip, slice, edges, lastFace);
+                search.nodes.add(nodes);
+            }
+        }
+
+        private void split() {
+            int togo = search.bound - depth;
+            List<SearchTask> children = new ArrayList<>();
+            for (int face = 0; face < 6; face++) {
+                if (face == lastFace || face == lastFace - 3)
+                    continue;
+                for (int power = 0; power < 3; power++) {
+                    int m = face * 3 + power;
+                    int c = SolverTables.cornerPermMove(cp, m);
+                    int t = SolverTables.twistMove(twist, m);
+                    int f = SolverTables.flipMove(flip, m);
+                    int s = SolverTables.sliceMove(slice, m);
+                    long e = OptimalTables.edgeMove(edges, m);
+                    if (heuristic(c, t, f, s, e) >= togo)
+                        continue;
+                    int[] childPath = path.clone();
+                    childPath[depth] = m;
+                    children.add(new SearchTask(search, childPath, depth + 1, c, t, f, s, e, face));
+                }
+            }
+            search.nodes.add(children.size());
+            invokeAll(children);
+        }
+
+        private boolean dfs(int depth, int cp, int twist, int flip, int slice, long edges, int lastFace) {
+            if (search.stop)
+                return true;
+            int togo = search.bound - depth;
+            if (togo == 0)
+                return isSolution();
+            for (int face = 0; face < 6; face++) {
+                // Never turn a face twice in a row, and turn opposite faces in one order only
+                if (face == lastFace || face == lastFace - 3)
+                    continue;
+                for (int power = 0; power < 3; power++) {
+                    int m = face * 3 + power;
+                    int t = SolverTables.twistMove(twist, m);
+                    int f = SolverTables.flipMove(flip, m);
+                    int s = SolverTables.sliceMove(slice, m);
+                    if (SolverTables.twistSlicePrun(t, s) >= togo || SolverTables.flipSlicePrun(f, s) >= togo)
+                        continue;
+                    // The pattern databases are large and rarely cached, so they go last
+                    int c = SolverTables.cornerPermMove(cp, m);
+                    if (OptimalTables.cornerPrun(c, t) >= togo)
+                        continue;
+                    long e = OptimalTables.edgeMove(edges, m);
+                    if (OptimalTables.edgePrunA(e) >= togo || OptimalTables.edgePrunB(e) >= togo)
+                        continue;
+                    nodes++;
+                    path[depth] = m;
+                    if (dfs(depth + 1, c, t, f, s, e, face))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        // The coordinates say corners are solved and edges oriented with the
+        // slice edges in place; only a full replay can confirm the rest
+        private boolean isSolution() {
+            if (scratch == null)
+                scratch = new CubieCube();
+            scratch.set(search.root);
+            for (int m : path)
+                SolverTables.apply(scratch, m);
+            if (!scratch.isSolved())
+                return false;
+            if (search.solution.compareAndSet(null, path.clone()))
+                search.stop = true;
+            return true;
+        }
+    }
+}
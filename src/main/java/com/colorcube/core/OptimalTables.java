@@ -0,0 +1,281 @@
+package com.colorcube.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.colorcube.model.CubieCube;
+import com.colorcube.persistence.TableFile;
+
+/**
+ * Pattern databases for the optimal solver, one 4-bit exact distance per
+ * state:
+ * <ul>
+ * <li>corners: permutation and twist of all 8 corners, about 44 MB;</li>
+ * <li>edges: positions and flips of the six edges UR, UF, UL, UB, FR, FL,
+ * about 21 MB. The 180 degree turn of the whole cube about the R-L axis
+ * (x2) maps those six onto the other six, so the same table also bounds
+ * DR, DB, DL, DF, BR, BL of the turned cube.</li>
+ * </ul>
+ *
+ * Like {@link SolverTables}, the tables are generated once into
+ * {@link #FILE_NAME} and memory-mapped afterwards. Generation takes about a
+ * minute, so the two-phase solver never touches this class.
+ */
+final class OptimalTables {
+    static final String FILE_NAME = "optimal_tables.bin";
+    // Bump whenever the table layout changes
+    private static final int VERSION = 2;
+
+    static final int N_CORNERS = SolverTables.N_PERM_8 * SolverTables.N_TWIST;
+    // Ordered slots of 6 of the 12 edges (12!/6!), times their flips
+    private static final int N_EDGE_SLOTS = 665280;
+    static final int N_EDGES = N_EDGE_SLOTS * 64;
+    private static final int UNKNOWN = 15;
+
+    private static final int[] EDGE_SET = { CubieCube.UR, CubieCube.UF, CubieCube.UL, CubieCube.UB, CubieCube.FR,
+            CubieCube.FL };
+    // Edge slot (and edge) each slot is turned into by x2
+    private static final int[] X2 = new int[CubieCube.EDGE_COUNT];
+    // EDGE_MOVE[m << 5 | slot | flip << 4] = where an edge there goes, packed the same way
+    private static final byte[] EDGE_MOVE = new byte[SolverTables.N_MOVES << 5];
+
+    private static final ByteBuffer cornerPrun;
+    private static final ByteBuffer edgePrun;
+
+    static {
+        int[][] x2 = { { CubieCube.UR, CubieCube.DR }, { CubieCube.UF, CubieCube.DB }, { CubieCube.UL, CubieCube.DL },
+                { CubieCube.UB, CubieCube.DF }, { CubieCube.FR, CubieCube.BR }, { CubieCube.FL, CubieCube.BL } };
+        for (int[] pair : x2) {
+            X2[pair[0]] = pair[1];
+            X2[pair[1]] = pair[0];
+        }
+        CubieCube c = new CubieCube();
+        for (int m = 0; m < SolverTables.N_MOVES; m++) {
+            c.reset();
+            SolverTables.apply(c, m);
+            // The edge now in slot s came from its home slot
+            for (int s = 0; s < CubieCube.EDGE_COUNT; s++) {
+                int from = c.getEdgePermutation(s), flip = c.getEdgeOrientation(s);
+                for (int f = 0; f < 2; f++)
+                    EDGE_MOVE[m << 5 | from | f << 4] = (byte) (s | (f ^ flip) << 4);
+            }
+        }
+
+        long[] sizes = { (N_CORNERS + 1) / 2, N_EDGES / 2 };
+        ByteBuffer[] tables = TableFile.load(TableFile.path(FILE_NAME), VERSION, sizes, OptimalTables::generate);
+        cornerPrun = tables[0];
+        edgePrun = tables[1];
+    }
+
+    private OptimalTables() {
+    }
+
+    /**
+     * Forces the tables to be mapped (or built) now rather than on the first solve.
+     */
+    static void init() {
+        // Class initialisation does the work
+    }
+
+    static int cornerPrun(int cp, int twist) {
+        return get(cornerPrun, cp * SolverTables.N_TWIST + twist);
+    }
+
+    /**
+     * All 12 edges packed into one long: bits 5e to 5e+4 hold the slot of
+     * edge e and, above it, its flip.
+     */
+    static long edges(CubieCube c) {
+        long edges = 0;
+        for (int s = 0; s < CubieCube.EDGE_COUNT; s++)
+            edges |= (long) (s | c.getEdgeOrientation(s) << 4) << 5 * c.getEdgePermutation(s);
+        return edges;
+    }
+
+    static long edgeMove(long edges, int m) {
+        int base = m << 5;
+        long out = 0;
+        for (int shift = 0; shift < 5 * CubieCube.EDGE_COUNT; shift += 5)
+            out |= (long) EDGE_MOVE[base | (int) (edges >>> shift) & 31] << shift;
+        return out;
+    }
+
+    /**
+     * Lower bound from both halves of the edges, see the class comment.
+     */
+    static int edgePrun(long edges) {
+        return Math.max(edgePrunA(edges), edgePrunB(edges));
+    }
+
+    /**
+     * Lower bound from UR, UF, UL, UB, FR, FL.
+     */
+    static int edgePrunA(long edges) {
+        int used = 0, slots = 0, flips = 0;
+        for (int i = 0; i < 6; i++) {
+            int v = (int) (edges >>> 5 * EDGE_SET[i]) & 31;
+            slots = slots * (12 - i) + rankDigit(v & 15, used);
+            used |= 1 << (v & 15);
+            flips = flips << 1 | v >>> 4;
+        }
+        return get(edgePrun, slots << 6 | flips);
+    }
+
+    /**
+     * Lower bound from DR, DB, DL, DF, BR, BL: the same table, looked up for
+     * where x2 takes them.
+     */
+    static int edgePrunB(long edges) {
+        int used = 0, slots = 0, flips = 0;
+        for (int i = 0; i < 6; i++) {
+            int v = (int) (edges >>> 5 * X2[EDGE_SET[i]]) & 31;
+            int slot = X2[v & 15];
+            slots = slots * (12 - i) + rankDigit(slot, used);
+            used |= 1 << slot;
+            flips = flips << 1 | v >>> 4;
+        }
+        return get(edgePrun, slots << 6 | flips);
+    }
+
+    // Position of slot among the slots not used yet
+    private static int rankDigit(int slot, int used) {
+        return slot - Integer.bitCount(used & ((1 << slot) - 1));
+    }
+
+    private static void generate(ByteBuffer[] out) {
+        out[0].put(generateCorners());
+        out[1].put(generateEdges());
+    }
+
+    private static byte[] generateCorners() {
+        byte[] t = new byte[(N_CORNERS + 1) / 2];
+        Arrays.fill(t, (byte) -1); // every nibble UNKNOWN
+        set(t, 0, 0);
+        int filled = 1;
+        for (int depth = 0; filled < N_CORNERS; depth++) {
+            int before = filled;
+            // Once most states are known it is cheaper to look backwards from
+            // the unknown ones; every move's inverse is also a move
+            boolean backward = filled > N_CORNERS / 2;
+            for (int i = 0; i < N_CORNERS; i++) {
+                int v = get(t, i);
+                if (backward ? v != UNKNOWN : v != depth)
+                    continue;
+                int cp = i / SolverTables.N_TWIST, twist = i % SolverTables.N_TWIST;
+                for (int m = 0; m < SolverTables.N_MOVES; m++) {
+                    int j = SolverTables.cornerPermMove(cp, m) * SolverTables.N_TWIST + SolverTables.twistMove(twist, m);
+                    if (backward) {
+                        if (get(t, j) == depth) {
+                            set(t, i, depth + 1);
+                            filled++;
+                            break;
+                        }
+                    } else if (get(t, j) == UNKNOWN) {
+                        set(t, j, depth + 1);
+                        filled++;
+                    }
+                }
+            }
+            if (filled == before)
+                throw new IllegalStateException("Corner table not fully reachable");
+        }
+        return t;
+    }
+
+    // Same search over the six edges of EDGE_SET, whose slots and flips are
+    // packed 5 bits per edge as in edges()
+    private static byte[] generateEdges() {
+        byte[] t = new byte[N_EDGES / 2];
+        Arrays.fill(t, (byte) -1);
+        set(t, edgeIndex(solvedEdges()), 0);
+        int filled = 1;
+        for (int depth = 0; filled < N_EDGES; depth++) {
+            int before = filled;
+            boolean backward = filled > N_EDGES / 2;
+            for (int i = 0; i < N_EDGES; i++) {
+                int v = get(t, i);
+                if (backward ? v != UNKNOWN : v != depth)
+                    continue;
+                long edges = edgeState(i);
+                for (int m = 0; m < SolverTables.N_MOVES; m++) {
+                    int j = edgeIndex(edgeMove6(edges, m));
+                    if (backward) {
+                        if (get(t, j) == depth) {
+                            set(t, i, depth + 1);
+                            filled++;
+                            break;
+                        }
+                    } else if (get(t, j) == UNKNOWN) {
+                        set(t, j, depth + 1);
+                        filled++;
+                    }
+                }
+            }
+            if (filled == before)
+                throw new IllegalStateException("Edge table not fully reachable");
+        }
+        return t;
+    }
+
+    private static long solvedEdges() {
+        long edges = 0;
+        for (int i = 0; i < 6; i++)
+            edges |= (long) EDGE_SET[i] << 5 * i;
+        return edges;
+    }
+
+    private static long edgeMove6(long edges, int m) {
+        int base = m << 5;
+        long out = 0;
+        for (int shift = 0; shift < 30; shift += 5)
+            out |= (long) EDGE_MOVE[base | (int) (edges >>> shift) & 31] << shift;
+        return out;
+    }
+
+    private static int edgeIndex(long edges) {
+        int used = 0, slots = 0, flips = 0;
+        for (int i = 0; i < 6; i++) {
+            int v = (int) (edges >>> 5 * i) & 31;
+            slots = slots * (12 - i) + rankDigit(v & 15, used);
+            used |= 1 << (v & 15);
+            flips = flips << 1 | v >>> 4;
+        }
+        return slots << 6 | flips;
+    }
+
+    private static long edgeState(int index) {
+        int flips = index & 63, slots = index >>> 6;
+        int[] digits = new int[6];
+        for (int i = 5; i >= 0; i--) {
+            digits[i] = slots % (12 - i);
+            slots /= 12 - i;
+        }
+        long edges = 0;
+        int used = 0;
+        for (int i = 0; i < 6; i++) {
+            // The digits[i]-th slot not used yet
+            int slot = -1;
+            for (int k = digits[i]; k >= 0; k--) {
+                do
+                    slot++;
+                while ((used & 1 << slot) != 0);
+            }
+            used |= 1 << slot;
+            edges |= (long) (slot | (flips >>> 5 - i & 1) << 4) << 5 * i;
+        }
+        return edges;
+    }
+
+    private static int get(byte[] t, int i) {
+        return t[i >>> 1] >>> ((i & 1) << 2) & 15;
+    }
+
+    private static int get(ByteBuffer t, int i) {
+        return t.get(i >>> 1) >>> ((i & 1) << 2) & 15;
+    }
+
+    private static void set(byte[] t, int i, int v) {
+        int shift = (i & 1) << 2;
+        t[i >>> 1] = (byte) (t[i >>> 1] & ~(15 << shift) | v << shift);
+    }
+}
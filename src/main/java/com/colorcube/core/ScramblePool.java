@@ -0,0 +1,219 @@
+package com.colorcube.core;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.colorcube.model.Move;
+
+/**
+ * Pool of ready-made scrambles, kept filled by a background virtual thread
+ * so that taking one never waits for the solver.
+ *
+ * The pool aims to hold {@link #getTargetSize()} scrambles: the minimum
+ * plus enough to cover {@link #DEMAND_SECONDS} of recent demand, capped at
+ * the maximum. If it runs dry, {@link #take()} falls back to a cheap
+ * generator instead of blocking.
+ */
+public class ScramblePool implements AutoCloseable {
+    public static final int DEFAULT_MIN_SIZE = 4;
+    public static final int DEFAULT_MAX_SIZE = 64;
+    private static final double DEMAND_SECONDS = 10;
+    private static final double RATE_SMOOTHING = 0.2;
+    // Pause after a failed generation so a broken generator does not spin
+    private static final long FAILURE_BACKOFF_MILLIS = 1000;
+    // How often a full pool wakes to let the target decay with demand
+    private static final long RECHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Supplier<List<Move>> generator;
+    private final Supplier<List<Move>> fallback;
+    private final int minSize;
+    private final int maxSize;
+
+    private final LinkedBlockingQueue<List<Move>> queue;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition belowTarget = lock.newCondition();
+    private volatile boolean running;
+    private Thread refiller;
+
+    private volatile int targetSize;
+    private volatile double refillRate; // scrambles per second while generating
+    private volatile long failureCount; // written only by the refiller
+    private volatile String lastFailure;
+
+    // Consumer side, guarded by this
+    private double consumptionRate;
+    private long lastTakeNanos;
+    private long takeCount;
+    private long fallbackCount;
+
+    /**
+     * Pool of random-state scrambles, falling back to 20 random moves.
+     */
+    public ScramblePool() {
+        this(Scrambler::generateRandomStateScramble, () -> Scrambler.generateScramble(20),
+                DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    public ScramblePool(Supplier<List<Move>> generator, Supplier<List<Move>> fallback, int minSize, int maxSize) {
+        if (minSize < 1 || maxSize < minSize)
+            throw new IllegalArgumentException("Invalid pool size range: " + minSize + ".." + maxSize);
+        this.generator = generator;
+        this.fallback = fallback;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.queue = new LinkedBlockingQueue<>(maxSize);
+        this.targetSize = minSize;
+    }
+
+    /**
+     * Starts the refill thread. Does nothing if already running.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        refiller = Thread.ofVirtual().name("scramble-pool").start(this::refillLoop);
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (refiller != null)
+            refiller.interrupt();
+        refiller = null;
+    }
+
+    /**
+     * Returns a pooled scramble, or a fallback one if the pool is empty.
+     * Never blocks.
+     */
+    public List<Move> take() {
+        List<Move> scramble = queue.poll();
+        recordTake(scramble == null);
+        signalIfBelowTarget();
+        return scramble != null ? scramble : fallback.get();
+    }
+
+    public int getDepth() {
+        return queue.size();
+    }
+
+    public int getTargetSize() {
+        return targetSize;
+    }
+
+    /**
+     * Scrambles generated per second of refill work (smoothed).
+     */
+    public double getRefillRate() {
+        return refillRate;
+    }
+
+    /**
+     * Scrambles taken per second (smoothed), decaying while none are taken.
+     */
+    public synchronized double getConsumptionRate() {
+        if (lastTakeNanos == 0)
+            return 0;
+        double idleRate = 1e9 / Math.max(1, System.nanoTime() - lastTakeNanos);
+        return Math.min(consumptionRate, idleRate);
+    }
+
+    public synchronized long getFallbackCount() {
+        return fallbackCount;
+    }
+
+    /**
+     * Number of scrambles whose generation threw.
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * The most recent generation failure, or null if there has been none.
+     */
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "ScramblePool[depth=%d, target=%d, refill=%.1f/s, consumption=%.2f/s, fallbacks=%d, failures=%d]",
+                getDepth(), getTargetSize(), getRefillRate(), getConsumptionRate(), getFallbackCount(),
+                getFailureCount());
+    }
+
+    private synchronized void recordTake(boolean empty) {
+        long now = System.nanoTime();
+        if (empty)
+            fallbackCount++;
+        if (takeCount++ > 0) {
+            double instant = 1e9 / Math.max(1, now - lastTakeNanos);
+            consumptionRate = takeCount == 2 ? instant
+                    : consumptionRate + RATE_SMOOTHING * (instant - consumptionRate);
+        }
+        lastTakeNanos = now;
+        updateTargetSize();
+    }
+
+    // Also called by the refiller, so the target shrinks as demand decays
+    // even while nothing is taken
+    private synchronized int updateTargetSize() {
+        int wanted = minSize + (int) Math.ceil(getConsumptionRate() * DEMAND_SECONDS);
+        targetSize = Math.min(maxSize, wanted);
+        return targetSize;
+    }
+
+    private void signalIfBelowTarget() {
+        if (queue.size() >= targetSize)
+            return;
+        lock.lock();
+        try {
+            belowTarget.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refillLoop() {
+        try {
+            while (running) {
+                lock.lock();
+                try {
+                    while (running && queue.size() >= updateTargetSize())
+                        belowTarget.awaitNanos(RECHECK_NANOS);
+                } finally {
+                    lock.unlock();
+                }
+                if (!running)
+                    return;
+
+                long start = System.nanoTime();
+                List<Move> scramble;
+                try {
+                    scramble = generator.get();
+                } catch (Throwable t) {
+                    if (!running || Thread.currentThread().isInterrupted())
+                        return;
+                    // Skip this one; take() covers the gap with fallback scrambles
+                    failureCount++;
+                    lastFailure = t.toString();
+                    System.err.println("Scramble generation failed: " + t);
+                    Thread.sleep(FAILURE_BACKOFF_MILLIS);
+                    continue;
+                }
+                double rate = 1e9 / Math.max(1, System.nanoTime() - start);
+                refillRate = refillRate == 0 ? rate : refillRate + RATE_SMOOTHING * (rate - refillRate);
+                queue.offer(scramble);
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+}
@@ -1,34 +1,259 @@
 package com.colorcube.core;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.Spliterator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntConsumer;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
-import com.colorcube.model.Face;
+import com.colorcube.model.CubieCube;
 import com.colorcube.model.Move;
 
 public class Scrambler {
-    private static final Random random = new Random();
-    private static final Face[] FACES = Face.values();
+    private static final Move[] MOVES = Move.values();
+    private static final int FACE_COUNT = 6;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // Random-state scrambles are solved without a time limit so that a seed
+    // always gives the same moves; 22 keeps the search quick for every state
+    private static final int RANDOM_STATE_MAX_LENGTH = 22;
+    private static final int BULK_CHUNK = 64;
+    private static final ThreadLocal<TwoPhaseSolver> SOLVER = ThreadLocal.withInitial(TwoPhaseSolver::new);
 
     public static List<Move> generateScramble(int length) {
-        List<Move> scramble = new ArrayList<>();
-        Face prevFace = null;
+        List<Move> scramble = new ArrayList<>(length);
+        fill(length, ThreadLocalRandom.current(), true, (i, m) -> scramble.add(MOVES[m]));
+        return scramble;
+    }
+
+    /**
+     * Writes a random-move scramble of {@code length} {@link Move} ordinals
+     * into {@code out} starting at {@code offset}, without allocating.
+     *
+     * No face is turned twice in a row, and a face is not turned again
+     * right after its opposite face (U D U), since both collapse into a
+     * shorter sequence.
+     */
+    public static void fill(byte[] out, int offset, int length, RandomGenerator rnd) {
+        fill(length, rnd, false, (i, m) -> out[offset + i] = (byte) m);
+    }
+
+    public static void fill(int[] out, int offset, int length, RandomGenerator rnd) {
+        fill(length, rnd, false, (i, m) -> out[offset + i] = m);
+    }
+
+    /**
+     * Stream of move ordinals for {@code count} scrambles of {@code length}
+     * moves each, scramble after scramble; scramble i is elements
+     * {@code [i * length, (i + 1) * length)}. Each scramble is seeded from
+     * {@code seed} and its index alone, so the stream is reproducible and
+     * splits cheaply for parallel use.
+     */
+    public static IntStream moveStream(long count, int length, long seed) {
+        return StreamSupport.intStream(moveSpliterator(count, length, seed), false);
+    }
+
+    public static Spliterator.OfInt moveSpliterator(long count, int length, long seed) {
+        if (count < 0 || length < 1 || count > Long.MAX_VALUE / length)
+            throw new IllegalArgumentException("Invalid scramble count or length: " + count + " x " + length);
+        return new MoveSpliterator(0, count, length, seed);
+    }
+
+    // Receives move i of a scramble
+    private interface MoveSink {
+        void accept(int i, int move);
+    }
 
+    private static void fill(int length, RandomGenerator rnd, boolean clockwiseOnly, MoveSink sink) {
+        int prev = -1, prevPrev = -1;
         for (int i = 0; i < length; i++) {
-            Face face;
-            do {
-                face = FACES[random.nextInt(FACES.length)];
-            } while (face == prevFace); // Simple avoidance of immediate repeat
+            int m = nextMove(prev, prevPrev, rnd.nextInt(), clockwiseOnly);
+            sink.accept(i, m);
+            prevPrev = prev;
+            prev = m >> 1;
+        }
+    }
+
+    // Picks a move ordinal from 32 random bits, given the faces of the last
+    // two moves (-1 if none). Faces are in Face order, so the opposite of
+    // face f is (f + 3) % 6
+    private static int nextMove(int prevFace, int prevPrevFace, int bits, boolean clockwiseOnly) {
+        int blocked = prevPrevFace >= 0 && prevFace == (prevPrevFace + 3) % FACE_COUNT ? prevPrevFace : -1;
+        int allowed = FACE_COUNT - (prevFace >= 0 ? 1 : 0) - (blocked >= 0 ? 1 : 0);
+        // High bits pick among the allowed faces, the lowest bit the direction
+        int k = (int) (((bits >>> 1) & 0x7FFFFFFFL) * allowed >>> 31);
+        int face = 0;
+        for (;; face++) {
+            if (face == prevFace || face == blocked)
+                continue;
+            if (k-- == 0)
+                break;
+        }
+        return face * 2 + (clockwiseOnly ? 0 : bits & 1);
+    }
 
-            String notation = face.toString();
+    /**
+     * Scramble for a uniformly random solvable state, found by solving that
+     * state and inverting the solution. Unlike random moves, every state is
+     * equally likely.
+     */
+    public static List<Move> generateRandomStateScramble() {
+        return generateRandomStateScramble(ThreadLocalRandom.current());
+    }
+
+    public static List<Move> generateRandomStateScramble(RandomGenerator rnd) {
+        return scrambleFor(randomState(rnd));
+    }
+
+    /**
+     * Generates {@code count} random-state scrambles on all cores. The result
+     * depends only on the seed: each fixed-size chunk of the output draws
+     * from its own stream split off {@code new SplittableRandom(seed)}.
+     */
+    public static List<List<Move>> generateRandomStateScrambles(int count, long seed) {
+        if (count < 0)
+            throw new IllegalArgumentException("Negative scramble count: " + count);
+        int chunks = (count + BULK_CHUNK - 1) / BULK_CHUNK;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++)
+            streams[c] = root.split();
+
+        List<List<Move>> scrambles = new ArrayList<>(Collections.nCopies(count, null));
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int end = Math.min(count, (c + 1) * BULK_CHUNK);
+            for (int i = c * BULK_CHUNK; i < end; i++)
+                scrambles.set(i, generateRandomStateScramble(streams[c]));
+        });
+        return scrambles;
+    }
 
-            Move move = Move.fromString(notation);
-            if (move != null) {
-                scramble.add(move);
-                prevFace = face;
+    /**
+     * A uniformly random state that satisfies the cube's parity and
+     * orientation constraints.
+     */
+    public static CubieCube randomState(RandomGenerator rnd) {
+        CubieCube c = new CubieCube();
+        int[] corners = shuffled(CubieCube.CORNER_COUNT, rnd);
+        int[] edges = shuffled(CubieCube.EDGE_COUNT, rnd);
+        for (int i = 0; i < corners.length; i++)
+            c.setCorner(i, corners[i], 0);
+        for (int i = 0; i < edges.length; i++)
+            c.setEdge(i, edges[i], 0);
+        // Corner and edge permutations must have equal parity; swapping two
+        // edges pairs the odd half of the states one-to-one with the even half
+        if (c.cornerParity() != c.edgeParity()) {
+            c.setEdge(CubieCube.EDGE_COUNT - 2, edges[CubieCube.EDGE_COUNT - 1], 0);
+            c.setEdge(CubieCube.EDGE_COUNT - 1, edges[CubieCube.EDGE_COUNT - 2], 0);
+        }
+        c.setTwist(rnd.nextInt(CubieCube.N_TWIST));
+        c.setFlip(rnd.nextInt(CubieCube.N_FLIP));
+        return c;
+    }
+
+    /**
+     * The inverse of a solution for {@code state}, i.e. moves that take a
+     * solved cube to it.
+     */
+    public static List<Move> scrambleFor(CubieCube state) {
+        List<Move> solution = SOLVER.get().solveFirst(state, RANDOM_STATE_MAX_LENGTH);
+        List<Move> scramble = new ArrayList<>(solution.size());
+        for (int i = solution.size() - 1; i >= 0; i--) {
+            Move m = solution.get(i);
+            // A half turn is two equal quarter turns and is its own inverse
+            if (i > 0 && solution.get(i - 1) == m) {
+                scramble.add(m);
+                scramble.add(m);
+                i--;
+            } else {
+                scramble.add(m.inverse());
             }
         }
         return scramble;
     }
+
+    private static int[] shuffled(int n, RandomGenerator rnd) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++)
+            a[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Splits only between scrambles; inside one it runs a SplitMix64
+    // sequence started from a hash of the seed and scramble index
+    private static final class MoveSpliterator implements Spliterator.OfInt {
+        private long index;
+        private final long end;
+        private final int length;
+        private final long seed;
+
+        private int pos;
+        private long state;
+        private int prev, prevPrev;
+
+        MoveSpliterator(long index, long end, int length, long seed) {
+            this.index = index;
+            this.end = end;
+            this.length = length;
+            this.seed = seed;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= end)
+                return false;
+            if (pos == 0) {
+                state = mix64(seed + index * GOLDEN_GAMMA);
+                prev = -1;
+                prevPrev = -1;
+            }
+            state += GOLDEN_GAMMA;
+            int m = nextMove(prev, prevPrev, (int) (mix64(state) >>> 32), false);
+            prevPrev = prev;
+            prev = m >> 1;
+            if (++pos == length) {
+                pos = 0;
+                index++;
+            }
+            action.accept(m);
+            return true;
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            long mid = (index + end) >>> 1;
+            if (pos != 0 || mid <= index)
+                return null;
+            MoveSpliterator prefix = new MoveSpliterator(index, mid, length, seed);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (end - index) * length - pos;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
 }
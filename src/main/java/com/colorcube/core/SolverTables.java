@@ -0,0 +1,259 @@
+package com.colorcube.core;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.colorcube.model.CubieCube;
+import com.colorcube.model.Move;
+import com.colorcube.persistence.TableFile;
+
+/**
+ * Coordinate move tables and pruning tables for the two-phase solver.
+ *
+ * Solver moves are numbered {@code face * 3 + power} in {@link com.colorcube.model.Face}
+ * order, where power 0 is a clockwise quarter turn, 1 a half turn and 2 a
+ * counter-clockwise quarter turn.
+ *
+ * Phase 1 works on corner twist, edge flip and the (unordered) slice edge
+ * positions; phase 2 on the corner permutation, the U/D edge permutation and
+ * the slice edge permutation, using only the moves that keep phase 1 solved.
+ * Pruning tables hold the exact distance to the goal of each phase for a pair
+ * of coordinates, built by breadth-first search.
+ *
+ * The tables are generated once into {@link #FILE_NAME} and memory-mapped on
+ * later launches (see {@link TableFile}); they are loaded on first use and
+ * shared by all solver instances.
+ */
+final class SolverTables {
+    static final int N_MOVES = 18;
+
+    static final int N_TWIST = CubieCube.N_TWIST;
+    static final int N_FLIP = CubieCube.N_FLIP;
+    static final int N_SLICE = CubieCube.N_SLICE;
+    static final int N_PERM_8 = CubieCube.N_PERM_8;
+    static final int N_SLICE_PERM = CubieCube.N_SLICE_PERM;
+
+    // The ten moves that keep the slice edges in the slice and all orientations solved
+    static final int[] PHASE2_MOVES = { 0, 1, 2, 4, 7, 9, 10, 11, 13, 16 };
+    static final boolean[] IS_PHASE2_MOVE = new boolean[N_MOVES];
+
+    static {
+        for (int m : PHASE2_MOVES)
+            IS_PHASE2_MOVE[m] = true;
+    }
+
+    static final String FILE_NAME = "solver_tables.bin";
+    // Bump whenever a coordinate definition or table layout changes
+    private static final int VERSION = 1;
+
+    private static final CharBuffer twistMove;
+    private static final CharBuffer flipMove;
+    private static final CharBuffer sliceMove;
+    private static final CharBuffer cornerPermMove;
+    private static final CharBuffer udEdgePermMove;
+    private static final CharBuffer slicePermMove;
+
+    private static final ByteBuffer twistSlicePrun;
+    private static final ByteBuffer flipSlicePrun;
+    private static final ByteBuffer cornerSlicePermPrun;
+    private static final ByteBuffer edgeSlicePermPrun;
+
+    static {
+        long[] sizes = {
+                2L * N_TWIST * N_MOVES, 2L * N_FLIP * N_MOVES, 2L * N_SLICE * N_MOVES,
+                2L * N_PERM_8 * N_MOVES, 2L * N_PERM_8 * N_MOVES, 2L * N_SLICE_PERM * N_MOVES,
+                (long) N_TWIST * N_SLICE, (long) N_FLIP * N_SLICE,
+                (long) N_PERM_8 * N_SLICE_PERM, (long) N_PERM_8 * N_SLICE_PERM };
+        ByteBuffer[] sections = TableFile.load(TableFile.path(FILE_NAME), VERSION, sizes, SolverTables::generate);
+        twistMove = sections[0].asCharBuffer();
+        flipMove = sections[1].asCharBuffer();
+        sliceMove = sections[2].asCharBuffer();
+        cornerPermMove = sections[3].asCharBuffer();
+        udEdgePermMove = sections[4].asCharBuffer();
+        slicePermMove = sections[5].asCharBuffer();
+        twistSlicePrun = sections[6];
+        flipSlicePrun = sections[7];
+        cornerSlicePermPrun = sections[8];
+        edgeSlicePermPrun = sections[9];
+    }
+
+    private SolverTables() {
+    }
+
+    /**
+     * Forces the tables to be mapped (or built) now rather than on the first solve.
+     */
+    static void init() {
+        // Class initialisation does the work
+    }
+
+    static int twistMove(int twist, int m) {
+        return twistMove.get(twist * N_MOVES + m);
+    }
+
+    static int flipMove(int flip, int m) {
+        return flipMove.get(flip * N_MOVES + m);
+    }
+
+    static int sliceMove(int slice, int m) {
+        return sliceMove.get(slice * N_MOVES + m);
+    }
+
+    static int cornerPermMove(int cp, int m) {
+        return cornerPermMove.get(cp * N_MOVES + m);
+    }
+
+    static int udEdgePermMove(int ep, int m) {
+        return udEdgePermMove.get(ep * N_MOVES + m);
+    }
+
+    static int slicePermMove(int sp, int m) {
+        return slicePermMove.get(sp * N_MOVES + m);
+    }
+
+    static int twistSlicePrun(int twist, int slice) {
+        return twistSlicePrun.get(twist * N_SLICE + slice);
+    }
+
+    static int flipSlicePrun(int flip, int slice) {
+        return flipSlicePrun.get(flip * N_SLICE + slice);
+    }
+
+    static int cornerSlicePermPrun(int cp, int sp) {
+        return cornerSlicePermPrun.get(cp * N_SLICE_PERM + sp);
+    }
+
+    static int edgeSlicePermPrun(int ep, int sp) {
+        return edgeSlicePermPrun.get(ep * N_SLICE_PERM + sp);
+    }
+
+    /**
+     * Applies solver move m to a cubie cube as 1-3 clockwise quarter turns.
+     */
+    static void apply(CubieCube c, int m) {
+        Move quarter = Move.values()[m / 3 * 2];
+        for (int p = 0; p <= m % 3; p++)
+            c.move(quarter);
+    }
+
+    /**
+     * Appends solver move m as quarter-turn {@link Move}s: a half turn
+     * becomes two clockwise turns.
+     */
+    static void appendMoves(List<Move> out, int m) {
+        int face = m / 3, power = m % 3;
+        if (power == 2) {
+            out.add(Move.values()[face * 2 + 1]);
+        } else {
+            out.add(Move.values()[face * 2]);
+            if (power == 1)
+                out.add(Move.values()[face * 2]);
+        }
+    }
+
+    private static void generate(ByteBuffer[] out) {
+        char[] twistMove = new char[N_TWIST * N_MOVES];
+        char[] flipMove = new char[N_FLIP * N_MOVES];
+        char[] sliceMove = new char[N_SLICE * N_MOVES];
+        char[] cornerPermMove = new char[N_PERM_8 * N_MOVES];
+        char[] udEdgePermMove = new char[N_PERM_8 * N_MOVES];
+        char[] slicePermMove = new char[N_SLICE_PERM * N_MOVES];
+
+        CubieCube c = new CubieCube();
+        for (int i = 0; i < N_TWIST; i++) {
+            c.reset();
+            c.setTwist(i);
+            fillMoves(c, twistMove, i, false, CubieCube::getTwist);
+        }
+        for (int i = 0; i < N_FLIP; i++) {
+            c.reset();
+            c.setFlip(i);
+            fillMoves(c, flipMove, i, false, CubieCube::getFlip);
+        }
+        for (int i = 0; i < N_SLICE; i++) {
+            c.reset();
+            c.setSlice(i);
+            fillMoves(c, sliceMove, i, false, CubieCube::getSlice);
+        }
+        for (int i = 0; i < N_PERM_8; i++) {
+            c.reset();
+            c.setCornerPermIndex(i);
+            fillMoves(c, cornerPermMove, i, false, CubieCube::getCornerPermIndex);
+        }
+        for (int i = 0; i < N_PERM_8; i++) {
+            c.reset();
+            c.setUDEdgePermIndex(i);
+            fillMoves(c, udEdgePermMove, i, true, CubieCube::getUDEdgePermIndex);
+        }
+        for (int i = 0; i < N_SLICE_PERM; i++) {
+            c.reset();
+            c.setSlicePermIndex(i);
+            fillMoves(c, slicePermMove, i, true, CubieCube::getSlicePermIndex);
+        }
+
+        out[0].asCharBuffer().put(twistMove);
+        out[1].asCharBuffer().put(flipMove);
+        out[2].asCharBuffer().put(sliceMove);
+        out[3].asCharBuffer().put(cornerPermMove);
+        out[4].asCharBuffer().put(udEdgePermMove);
+        out[5].asCharBuffer().put(slicePermMove);
+
+        out[6].put(buildPruning(N_TWIST, N_SLICE, twistMove, sliceMove, false));
+        out[7].put(buildPruning(N_FLIP, N_SLICE, flipMove, sliceMove, false));
+        out[8].put(buildPruning(N_PERM_8, N_SLICE_PERM, cornerPermMove, slicePermMove, true));
+        out[9].put(buildPruning(N_PERM_8, N_SLICE_PERM, udEdgePermMove, slicePermMove, true));
+    }
+
+    private interface Coordinate {
+        int get(CubieCube c);
+    }
+
+    private static void fillMoves(CubieCube c, char[] table, int index, boolean phase2Only, Coordinate coord) {
+        for (int face = 0; face < 6; face++) {
+            Move quarter = Move.values()[face * 2];
+            for (int p = 0; p < 4; p++) {
+                c.move(quarter);
+                int m = face * 3 + p;
+                // The fourth turn restores c for the next face
+                if (p < 3 && (!phase2Only || IS_PHASE2_MOVE[m]))
+                    table[index * N_MOVES + m] = (char) coord.get(c);
+            }
+        }
+    }
+
+    // Breadth-first search from the solved pair (0, 0); entry = a * n2 + b
+    private static byte[] buildPruning(int n1, int n2, char[] moveA, char[] moveB, boolean phase2) {
+        byte[] prun = new byte[n1 * n2];
+        Arrays.fill(prun, (byte) -1);
+        prun[0] = 0;
+        int[] moves = phase2 ? PHASE2_MOVES : allMoves();
+        int filled = 1;
+        for (byte depth = 0; filled < prun.length; depth++) {
+            int before = filled;
+            for (int i = 0; i < prun.length; i++) {
+                if (prun[i] != depth)
+                    continue;
+                int a = i / n2, b = i % n2;
+                for (int m : moves) {
+                    int j = moveA[a * N_MOVES + m] * n2 + moveB[b * N_MOVES + m];
+                    if (prun[j] == -1) {
+                        prun[j] = (byte) (depth + 1);
+                        filled++;
+                    }
+                }
+            }
+            if (filled == before)
+                throw new IllegalStateException("Pruning table not fully reachable");
+        }
+        return prun;
+    }
+
+    private static int[] allMoves() {
+        int[] moves = new int[N_MOVES];
+        for (int m = 0; m < N_MOVES; m++)
+            moves[m] = m;
+        return moves;
+    }
+}
@@ -0,0 +1,248 @@
+package com.colorcube.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.colorcube.model.CubeModel;
+import com.colorcube.model.CubieCube;
+import com.colorcube.model.Move;
+
+/**
+ * Near-optimal solver using Kociemba's two-phase algorithm.
+ *
+ * Phase 1 searches for a move sequence into the subgroup where all corners
+ * and edges are oriented and the slice edges sit in the middle layer; phase
+ * 2 solves the rest with U, D and half turns of the side faces. Phase 1
+ * solutions are tried in order of length. Each combined solution lowers the
+ * length limit to one below its own, so the search can go on finding
+ * shorter ones; {@link #solve(CubieCube)} stops at the target length or
+ * after a short budget, {@link #solveShortest} only when its time runs out.
+ *
+ * Lengths are counted in half-turn metric. The returned {@link Move}s only
+ * contain quarter turns, so each half turn appears as two clockwise moves.
+ *
+ * An instance keeps its search state between calls and is not thread-safe;
+ * use one per thread. The shared tables are built on first use.
+ */
+public class TwoPhaseSolver {
+    public static final int DEFAULT_MAX_LENGTH = 22;
+    public static final int DEFAULT_TARGET_LENGTH = 20;
+    // Time allowed for finding any solution within the maximum length
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+    // Total time after which solve() settles for the best solution so far
+    public static final long DEFAULT_IMPROVE_MILLIS = 50;
+
+    private static final int MAX_PHASE1 = 12;
+    private static final int MAX_PHASE2 = 18;
+    // Phase 1 needs at most 12 moves and phase 2 at most 18
+    private static final int MAX_TOTAL = MAX_PHASE1 + MAX_PHASE2;
+    private static final int TIME_CHECK_MASK = 0x1FFF;
+
+    private final int[] path = new int[MAX_TOTAL];
+    private final int[] best = new int[MAX_TOTAL];
+    private final CubieCube start = new CubieCube();
+    private final CubieCube phase2Start = new CubieCube();
+
+    private int maxLength;
+    private int targetLength;
+    private int solutionLength;
+    private long startNanos;
+    private long timeoutNanos;
+    private long improveNanos;
+    private boolean timedOut;
+    private long nodes;
+
+    /**
+     * Builds the shared tables now, e.g. on a background thread at startup.
+     */
+    public static void warmUp() {
+        SolverTables.init();
+    }
+
+    public List<Move> solve(CubeModel model) {
+        return solve(model.getFaceletString());
+    }
+
+    public List<Move> solve(String facelets) {
+        return solve(CubieCube.fromFacelets(facelets));
+    }
+
+    /**
+     * Returns a solution of at most {@link #DEFAULT_TARGET_LENGTH} moves, or
+     * the shortest of at most {@link #DEFAULT_MAX_LENGTH} found within
+     * {@link #DEFAULT_IMPROVE_MILLIS}; typically within tens of milliseconds.
+     *
+     * @throws IllegalArgumentException if the cube is not solvable
+     */
+    public List<Move> solve(CubieCube cube) {
+        return solve(cube, DEFAULT_TARGET_LENGTH, DEFAULT_MAX_LENGTH, DEFAULT_IMPROVE_MILLIS,
+                DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Returns the first solution of at most {@code maxLength} half-turn
+     * moves. If none turns up within the timeout, the first solution of any
+     * length is returned instead. A timeout of {@code Long.MAX_VALUE} never
+     * expires, which makes the result depend only on the cube.
+     *
+     * @throws IllegalArgumentException if the cube is not solvable
+     */
+    public List<Move> solve(CubieCube cube, int maxLength, long timeoutMillis) {
+        return solve(cube, maxLength, maxLength, timeoutMillis, timeoutMillis);
+    }
+
+    /**
+     * Same as {@link #solve(CubieCube, int, long)} without a time limit.
+     */
+    public List<Move> solveFirst(CubieCube cube, int maxLength) {
+        return solve(cube, maxLength, maxLength, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Keeps searching for shorter solutions until the timeout, or until
+     * every shorter candidate has been ruled out, and returns the shortest
+     * found. Meant for one interactive solve, not for bulk work.
+     *
+     * @throws IllegalArgumentException if the cube is not solvable
+     */
+    public List<Move> solveShortest(CubieCube cube, long timeoutMillis) {
+        return solve(cube, 0, DEFAULT_MAX_LENGTH, timeoutMillis, timeoutMillis);
+    }
+
+    // Each solution found lowers the limit to one below its length, until
+    // one of at most targetLength ends the search. Once there is a solution,
+    // the search also ends after improveMillis
+    private List<Move> solve(CubieCube cube, int targetLength, int maxLength, long improveMillis,
+            long timeoutMillis) {
+        cube.verify();
+        SolverTables.init();
+        start.set(cube);
+        nodes = 0;
+        startNanos = System.nanoTime();
+        solutionLength = -1;
+
+        this.targetLength = targetLength;
+        this.improveNanos = TimeUnit.MILLISECONDS.toNanos(improveMillis);
+        search(Math.min(maxLength, MAX_TOTAL), TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        if (solutionLength < 0) {
+            this.targetLength = MAX_TOTAL;
+            search(MAX_TOTAL, Long.MAX_VALUE);
+        }
+        if (solutionLength < 0)
+            throw new IllegalStateException("No solution found for a verified cube");
+
+        List<Move> moves = new ArrayList<>();
+        for (int i = 0; i < solutionLength; i++)
+            SolverTables.appendMoves(moves, best[i]);
+        return moves;
+    }
+
+    /**
+     * Half-turn length of the last solution.
+     */
+    public int getLastLength() {
+        return solutionLength;
+    }
+
+    /**
+     * Search nodes visited by the last solve.
+     */
+    public long getLastNodeCount() {
+        return nodes;
+    }
+
+    // Leaves the best solution found in best and solutionLength
+    private void search(int maxLength, long timeoutNanos) {
+        this.maxLength = maxLength;
+        this.timeoutNanos = timeoutNanos;
+        this.timedOut = false;
+
+        int twist = start.getTwist(), flip = start.getFlip(), slice = start.getSlice();
+        int h = Math.max(SolverTables.twistSlicePrun(twist, slice), SolverTables.flipSlicePrun(flip, slice));
+        // The field, not the parameter: each solution found lowers it
+        for (int depth = h; depth <= Math.min(MAX_PHASE1, this.maxLength); depth++) {
+            if (phase1(twist, flip, slice, 0, depth, -1) || timedOut)
+                return;
+        }
+    }
+
+    private boolean phase1(int twist, int flip, int slice, int depth, int togo, int lastFace) {
+        if (togo == 0) {
+            // A last move that phase 2 could make anyway only repeats a shorter phase 1
+            if (depth > 0 && SolverTables.IS_PHASE2_MOVE[path[depth - 1]])
+                return false;
+            return phase2Start(depth);
+        }
+        if ((++nodes & TIME_CHECK_MASK) == 0
+                && System.nanoTime() - startNanos > (solutionLength < 0 ? timeoutNanos : improveNanos)) {
+            timedOut = true;
+            return false;
+        }
+        for (int face = 0; face < 6; face++) {
+            // Never turn a face twice in a row, and turn opposite faces in one order only
+            if (face == lastFace || face == lastFace - 3)
+                continue;
+            for (int power = 0; power < 3; power++) {
+                int m = face * 3 + power;
+                int t = SolverTables.twistMove(twist, m);
+                int f = SolverTables.flipMove(flip, m);
+                int s = SolverTables.sliceMove(slice, m);
+                if (SolverTables.twistSlicePrun(t, s) >= togo || SolverTables.flipSlicePrun(f, s) >= togo)
+                    continue;
+                path[depth] = m;
+                if (phase1(t, f, s, depth + 1, togo - 1, face))
+                    return true;
+                // A better solution may have lowered the limit below this depth
+                if (timedOut || depth + togo > maxLength)
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean phase2Start(int depth1) {
+        phase2Start.set(start);
+        for (int i = 0; i < depth1; i++)
+            SolverTables.apply(phase2Start, path[i]);
+        int cp = phase2Start.getCornerPermIndex();
+        int ep = phase2Start.getUDEdgePermIndex();
+        int sp = phase2Start.getSlicePermIndex();
+
+        int h = Math.max(SolverTables.cornerSlicePermPrun(cp, sp), SolverTables.edgeSlicePermPrun(ep, sp));
+        int maxDepth2 = Math.min(MAX_PHASE2, maxLength - depth1);
+        int lastFace = depth1 > 0 ? path[depth1 - 1] / 3 : -1;
+        for (int depth2 = h; depth2 <= maxDepth2; depth2++) {
+            if (phase2(cp, ep, sp, depth1, depth2, lastFace)) {
+                solutionLength = depth1 + depth2;
+                System.arraycopy(path, 0, best, 0, solutionLength);
+                if (solutionLength <= targetLength)
+                    return true;
+                // Only a shorter solution is worth finding from now on
+                maxLength = solutionLength - 1;
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private boolean phase2(int cp, int ep, int sp, int depth, int togo, int lastFace) {
+        if (togo == 0)
+            return true; // both pruning values were 0, so the cube is solved
+        nodes++;
+        for (int m : SolverTables.PHASE2_MOVES) {
+            int face = m / 3;
+            if (face == lastFace || face == lastFace - 3)
+                continue;
+            int c = SolverTables.cornerPermMove(cp, m);
+            int e = SolverTables.udEdgePermMove(ep, m);
+            int s = SolverTables.slicePermMove(sp, m);
+            if (SolverTables.cornerSlicePermPrun(c, s) >= togo || SolverTables.edgeSlicePermPrun(e, s) >= togo)
+                continue;
+            path[depth] = m;
+            if (phase2(c, e, s, depth + 1, togo - 1, face))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,86 @@
+package com.colorcube.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A move sequence folded into one 54-entry facelet permutation, so that
+ * applying it costs one pass over the facelets regardless of its length.
+ *
+ * Compiled sequences are immutable and cached by their move list.
+ */
+public final class CompiledSequence {
+    private static final int CACHE_SIZE = 256;
+
+    // Access-ordered LRU: long drills reuse a handful of sequences, while
+    // one-off scrambles age out
+    private static final Map<List<Move>, CompiledSequence> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<List<Move>, CompiledSequence>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Move>, CompiledSequence> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final List<Move> moves;
+    final int[] perm;
+
+    private CompiledSequence(List<Move> moves, int[] perm) {
+        this.moves = moves;
+        this.perm = perm;
+    }
+
+    public static CompiledSequence compile(List<Move> moves) {
+        List<Move> key = List.copyOf(moves);
+        CompiledSequence seq = CACHE.get(key);
+        if (seq == null) {
+            seq = new CompiledSequence(key, compose(key));
+            CACHE.put(key, seq);
+        }
+        return seq;
+    }
+
+    // Moving by p then q leaves at i what p left at q[i], i.e. the original p[q[i]]
+    private static int[] compose(List<Move> moves) {
+        int[] perm = FaceletMoves.identity();
+        int[] next = new int[FaceletMoves.FACELET_COUNT];
+        for (Move m : moves) {
+            int[] q = FaceletMoves.perm(m);
+            for (int i = 0; i < next.length; i++)
+                next[i] = perm[q[i]];
+            int[] t = perm;
+            perm = next;
+            next = t;
+        }
+        return perm;
+    }
+
+    public List<Move> getMoves() {
+        return moves;
+    }
+
+    public int length() {
+        return moves.size();
+    }
+
+    /**
+     * Returns a copy of the composed permutation: facelet i ends up holding
+     * what was at index {@code permutation()[i]}.
+     */
+    public int[] permutation() {
+        return perm.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Move m : moves) {
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(m);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,562 @@
+package com.colorcube.model;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Cube state at the cubie level: 8 corners and 12 edges, each with a
+ * position and an orientation.
+ *
+ * Each slot packs the cubie that sits there with its orientation into one
+ * byte: corners as {@code perm | twist << 3}, edges as {@code perm | flip << 4}.
+ * A face turn moves 4 corner bytes and 4 edge bytes instead of 20 stickers.
+ */
+public final class CubieCube {
+    public static final int CORNER_COUNT = 8;
+    public static final int EDGE_COUNT = 12;
+
+    // Corner slots: URF, UFL, ULB, UBR, DFR, DLF, DBL, DRB
+    public static final int URF = 0, UFL = 1, ULB = 2, UBR = 3, DFR = 4, DLF = 5, DBL = 6, DRB = 7;
+    // Edge slots: UR, UF, UL, UB, DR, DF, DL, DB, FR, FL, BL, BR
+    public static final int UR = 0, UF = 1, UL = 2, UB = 3, DR = 4, DF = 5, DL = 6, DB = 7,
+            FR = 8, FL = 9, BL = 10, BR = 11;
+
+    // Facelet indices of each corner slot, U/D sticker first, then clockwise
+    static final int[][] CORNER_FACELETS = {
+            { 8, 9, 20 }, { 6, 18, 38 }, { 0, 36, 47 }, { 2, 45, 11 },
+            { 29, 26, 15 }, { 27, 44, 24 }, { 33, 53, 42 }, { 35, 17, 51 } };
+    // Facelet indices of each edge slot, U/D (or F/B for slice edges) sticker first
+    static final int[][] EDGE_FACELETS = {
+            { 5, 10 }, { 7, 19 }, { 3, 37 }, { 1, 46 }, { 32, 16 }, { 28, 25 },
+            { 30, 43 }, { 34, 52 }, { 23, 12 }, { 21, 41 }, { 50, 39 }, { 48, 14 } };
+
+    // CORNER_BY_FACES[a * 6 + b] = corner whose stickers after the U/D one
+    // show faces a and b, or -1
+    private static final byte[] CORNER_BY_FACES = new byte[36];
+    // EDGE_BY_FACES[a * 6 + b] = packed edge whose stickers show faces a and
+    // b, or -1
+    private static final byte[] EDGE_BY_FACES = new byte[36];
+
+    private static final int CORNER_PERM_MASK = 0x07;
+    private static final int EDGE_PERM_MASK = 0x0F;
+
+    // TWIST[d * 24 + c] = packed corner c twisted by d more steps clockwise
+    private static final byte[] TWIST = new byte[3 * 24];
+
+    // Per move, 16 ints: the corner 4-cycle (a <- b <- c <- d <- a), the
+    // TWIST offset for the cubie arriving at each of those slots, then the
+    // edge 4-cycle and the flip bit picked up at each of its slots
+    private static final int[][] MOVE_TABLE = new int[Move.values().length][16];
+
+    static {
+        Arrays.fill(CORNER_BY_FACES, (byte) -1);
+        for (int j = 0; j < CORNER_COUNT; j++)
+            CORNER_BY_FACES[CORNER_FACELETS[j][1] / 9 * 6 + CORNER_FACELETS[j][2] / 9] = (byte) j;
+        Arrays.fill(EDGE_BY_FACES, (byte) -1);
+        for (int j = 0; j < EDGE_COUNT; j++) {
+            int a = EDGE_FACELETS[j][0] / 9, b = EDGE_FACELETS[j][1] / 9;
+            EDGE_BY_FACES[a * 6 + b] = (byte) j;
+            EDGE_BY_FACES[b * 6 + a] = (byte) (j | 1 << 4);
+        }
+
+        for (int d = 0; d < 3; d++) {
+            for (int c = 0; c < 24; c++) {
+                int ori = ((c >> 3) + d) % 3;
+                TWIST[d * 24 + c] = (byte) ((c & CORNER_PERM_MASK) | ori << 3);
+            }
+        }
+
+        // Derive the cubie moves from the facelet tables, so both levels
+        // always agree on what a move does
+        for (Move m : Move.values()) {
+            int[] perm = FaceletMoves.perm(m);
+            int[] faces = new int[FaceletMoves.FACELET_COUNT];
+            for (int i = 0; i < faces.length; i++)
+                faces[i] = perm[i] / 9;
+            CubieCube mc = new CubieCube();
+            mc.setFaces(faces);
+
+            int[] t = MOVE_TABLE[m.ordinal()];
+            int[] cc = cycleOf(mc.corners, CORNER_PERM_MASK);
+            int[] ec = cycleOf(mc.edges, EDGE_PERM_MASK);
+            for (int k = 0; k < 4; k++) {
+                t[k] = cc[k];
+                t[4 + k] = (mc.corners[cc[k]] >> 3) * 24;
+                t[8 + k] = ec[k];
+                t[12 + k] = mc.edges[ec[k]] & ~EDGE_PERM_MASK;
+            }
+        }
+    }
+
+    final byte[] corners = new byte[CORNER_COUNT];
+    final byte[] edges = new byte[EDGE_COUNT];
+
+    /**
+     * Creates a solved cube.
+     */
+    public CubieCube() {
+        reset();
+    }
+
+    public CubieCube(CubieCube other) {
+        set(other);
+    }
+
+    public void reset() {
+        for (int i = 0; i < CORNER_COUNT; i++)
+            corners[i] = (byte) i;
+        for (int i = 0; i < EDGE_COUNT; i++)
+            edges[i] = (byte) i;
+    }
+
+    public void set(CubieCube other) {
+        System.arraycopy(other.corners, 0, corners, 0, CORNER_COUNT);
+        System.arraycopy(other.edges, 0, edges, 0, EDGE_COUNT);
+    }
+
+    public int getCornerPermutation(int slot) {
+        return corners[slot] & CORNER_PERM_MASK;
+    }
+
+    public int getCornerOrientation(int slot) {
+        return corners[slot] >> 3;
+    }
+
+    public int getEdgePermutation(int slot) {
+        return edges[slot] & EDGE_PERM_MASK;
+    }
+
+    public int getEdgeOrientation(int slot) {
+        return edges[slot] >> 4;
+    }
+
+    public void setCorner(int slot, int cubie, int twist) {
+        corners[slot] = (byte) (cubie | twist << 3);
+    }
+
+    public void setEdge(int slot, int cubie, int flip) {
+        edges[slot] = (byte) (cubie | flip << 4);
+    }
+
+    public void move(Move move) {
+        int[] t = MOVE_TABLE[move.ordinal()];
+        byte[] c = corners;
+        byte first = c[t[0]];
+        c[t[0]] = TWIST[t[4] + c[t[1]]];
+        c[t[1]] = TWIST[t[5] + c[t[2]]];
+        c[t[2]] = TWIST[t[6] + c[t[3]]];
+        c[t[3]] = TWIST[t[7] + first];
+
+        byte[] e = edges;
+        first = e[t[8]];
+        e[t[8]] = (byte) (e[t[9]] ^ t[12]);
+        e[t[9]] = (byte) (e[t[10]] ^ t[13]);
+        e[t[10]] = (byte) (e[t[11]] ^ t[14]);
+        e[t[11]] = (byte) (first ^ t[15]);
+    }
+
+    /**
+     * Sets this cube to {@code a} followed by {@code b}. Both may alias this.
+     */
+    public void multiply(CubieCube a, CubieCube b) {
+        byte[] c = new byte[CORNER_COUNT];
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            int src = b.corners[i] & CORNER_PERM_MASK;
+            c[i] = TWIST[(b.corners[i] >> 3) * 24 + a.corners[src]];
+        }
+        byte[] e = new byte[EDGE_COUNT];
+        for (int i = 0; i < EDGE_COUNT; i++) {
+            int src = b.edges[i] & EDGE_PERM_MASK;
+            e[i] = (byte) (a.edges[src] ^ (b.edges[i] & ~EDGE_PERM_MASK));
+        }
+        System.arraycopy(c, 0, corners, 0, CORNER_COUNT);
+        System.arraycopy(e, 0, edges, 0, EDGE_COUNT);
+    }
+
+    /**
+     * Sets this cube to the inverse of {@code a}. {@code a} must not alias this.
+     */
+    public void invert(CubieCube a) {
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            int cubie = a.corners[i] & CORNER_PERM_MASK;
+            int ori = a.corners[i] >> 3;
+            corners[cubie] = (byte) (i | ((3 - ori) % 3) << 3);
+        }
+        for (int i = 0; i < EDGE_COUNT; i++) {
+            int cubie = a.edges[i] & EDGE_PERM_MASK;
+            edges[cubie] = (byte) (i | (a.edges[i] & ~EDGE_PERM_MASK));
+        }
+    }
+
+    public boolean isSolved() {
+        for (int i = 0; i < CORNER_COUNT; i++)
+            if (corners[i] != i)
+                return false;
+        for (int i = 0; i < EDGE_COUNT; i++)
+            if (edges[i] != i)
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns 1 if the corner permutation is odd, 0 if it is even.
+     */
+    public int cornerParity() {
+        int s = 0;
+        for (int i = CORNER_COUNT - 1; i > 0; i--)
+            for (int j = i - 1; j >= 0; j--)
+                if (getCornerPermutation(j) > getCornerPermutation(i))
+                    s++;
+        return s & 1;
+    }
+
+    /**
+     * Returns 1 if the edge permutation is odd, 0 if it is even.
+     */
+    public int edgeParity() {
+        int s = 0;
+        for (int i = EDGE_COUNT - 1; i > 0; i--)
+            for (int j = i - 1; j >= 0; j--)
+                if (getEdgePermutation(j) > getEdgePermutation(i))
+                    s++;
+        return s & 1;
+    }
+
+    /**
+     * Checks that this is a state reachable by face turns.
+     *
+     * @throws IllegalArgumentException describing the first violated constraint
+     */
+    public void verify() {
+        int seen = 0, twist = 0;
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            seen |= 1 << getCornerPermutation(i);
+            twist += getCornerOrientation(i);
+        }
+        if (seen != (1 << CORNER_COUNT) - 1)
+            throw new IllegalArgumentException("Corners are not a permutation");
+        if (twist % 3 != 0)
+            throw new IllegalArgumentException("Twisted corner");
+
+        seen = 0;
+        int flip = 0;
+        for (int i = 0; i < EDGE_COUNT; i++) {
+            seen |= 1 << getEdgePermutation(i);
+            flip += getEdgeOrientation(i);
+        }
+        if (seen != (1 << EDGE_COUNT) - 1)
+            throw new IllegalArgumentException("Edges are not a permutation");
+        if (flip % 2 != 0)
+            throw new IllegalArgumentException("Flipped edge");
+        if (cornerParity() != edgeParity())
+            throw new IllegalArgumentException("Parity error: two pieces swapped");
+    }
+
+    public boolean isSolvable() {
+        try {
+            verify();
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * True if a facelet string reads as cubies that face turns can reach.
+     */
+    public static boolean isSolvable(String facelets) {
+        try {
+            return fromFacelets(facelets).isSolvable();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Coordinates, as used by the two-phase solver's move and pruning tables.
+    // Setters overwrite the parts they describe and clear orientations where
+    // they place cubies.
+
+    public static final int N_TWIST = 2187; // 3^7
+    public static final int N_FLIP = 2048; // 2^11
+    public static final int N_SLICE = 495; // C(12, 4)
+    public static final int N_PERM_8 = 40320; // 8!
+    public static final int N_SLICE_PERM = 24; // 4!
+
+    private static final int[][] BINOMIAL = new int[13][5];
+
+    static {
+        for (int n = 0; n <= 12; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= 4 && k <= n; k++)
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k < n ? BINOMIAL[n - 1][k] : 0);
+        }
+    }
+
+    /**
+     * Corner orientations 0-6 in base 3; the last one follows from them.
+     */
+    public int getTwist() {
+        int t = 0;
+        for (int i = 0; i < CORNER_COUNT - 1; i++)
+            t = 3 * t + getCornerOrientation(i);
+        return t;
+    }
+
+    public void setTwist(int twist) {
+        int sum = 0;
+        for (int i = CORNER_COUNT - 2; i >= 0; i--) {
+            int ori = twist % 3;
+            setCorner(i, getCornerPermutation(i), ori);
+            sum += ori;
+            twist /= 3;
+        }
+        setCorner(CORNER_COUNT - 1, getCornerPermutation(CORNER_COUNT - 1), (3 - sum % 3) % 3);
+    }
+
+    /**
+     * Edge orientations 0-10 in base 2; the last one follows from them.
+     */
+    public int getFlip() {
+        int f = 0;
+        for (int i = 0; i < EDGE_COUNT - 1; i++)
+            f = 2 * f + getEdgeOrientation(i);
+        return f;
+    }
+
+    public void setFlip(int flip) {
+        int sum = 0;
+        for (int i = EDGE_COUNT - 2; i >= 0; i--) {
+            int ori = flip & 1;
+            setEdge(i, getEdgePermutation(i), ori);
+            sum += ori;
+            flip >>= 1;
+        }
+        setEdge(EDGE_COUNT - 1, getEdgePermutation(EDGE_COUNT - 1), sum & 1);
+    }
+
+    /**
+     * Which 4 slots hold the FR, FL, BL, BR edges, ignoring their order.
+     * 0 when they are all in the middle layer.
+     */
+    public int getSlice() {
+        int a = 0, x = 0;
+        for (int j = EDGE_COUNT - 1; j >= 0; j--) {
+            if (getEdgePermutation(j) >= FR)
+                a += BINOMIAL[EDGE_COUNT - 1 - j][++x];
+        }
+        return a;
+    }
+
+    public void setSlice(int slice) {
+        int x = 4, sliceEdge = FR, otherEdge = UR;
+        for (int j = 0; j < EDGE_COUNT; j++) {
+            int c = BINOMIAL[EDGE_COUNT - 1 - j][x];
+            if (x > 0 && slice >= c) {
+                slice -= c;
+                x--;
+                setEdge(j, sliceEdge++, 0);
+            } else {
+                setEdge(j, otherEdge++, 0);
+            }
+        }
+    }
+
+    public int getCornerPermIndex() {
+        return rank(corners, 0, CORNER_COUNT, CORNER_PERM_MASK, 0);
+    }
+
+    public void setCornerPermIndex(int index) {
+        unrank(corners, 0, CORNER_COUNT, 0, index);
+    }
+
+    /**
+     * Permutation of the 8 U/D-layer edges. Only meaningful once the slice
+     * edges are in the middle layer, as in phase 2 of the solver.
+     */
+    public int getUDEdgePermIndex() {
+        return rank(edges, 0, 8, EDGE_PERM_MASK, 0);
+    }
+
+    public void setUDEdgePermIndex(int index) {
+        unrank(edges, 0, 8, 0, index);
+        for (int i = FR; i < EDGE_COUNT; i++)
+            edges[i] = (byte) i;
+    }
+
+    /**
+     * Permutation of the 4 slice edges within the middle layer.
+     */
+    public int getSlicePermIndex() {
+        return rank(edges, FR, 4, EDGE_PERM_MASK, FR);
+    }
+
+    public void setSlicePermIndex(int index) {
+        for (int i = 0; i < FR; i++)
+            edges[i] = (byte) i;
+        unrank(edges, FR, 4, FR, index);
+    }
+
+    // Lehmer code of slots[from, from + n), cubies numbered from base
+    private static int rank(byte[] slots, int from, int n, int mask, int base) {
+        int r = 0;
+        for (int i = 0; i < n; i++) {
+            int v = (slots[from + i] & mask) - base;
+            int smaller = 0;
+            for (int j = i + 1; j < n; j++)
+                if ((slots[from + j] & mask) - base < v)
+                    smaller++;
+            r = r * (n - i) + smaller;
+        }
+        return r;
+    }
+
+    private static void unrank(byte[] slots, int from, int n, int base, int index) {
+        int[] digits = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            digits[i] = index % (n - i);
+            index /= (n - i);
+        }
+        int used = 0;
+        for (int i = 0; i < n; i++) {
+            int d = digits[i];
+            int v = 0;
+            while (true) {
+                if ((used & 1 << v) == 0 && d-- == 0)
+                    break;
+                v++;
+            }
+            used |= 1 << v;
+            slots[from + i] = (byte) (base + v);
+        }
+    }
+
+    /**
+     * Reads a 54-char facelet string, as used by {@link CubeModel#getFaceletString()}.
+     * Colours are matched against the centre stickers.
+     *
+     * @throws IllegalArgumentException if the stickers do not form valid cubies
+     */
+    public static CubieCube fromFacelets(String state) {
+        if (state.length() != FaceletMoves.FACELET_COUNT) {
+            throw new IllegalArgumentException("State must be 54 characters");
+        }
+        int[] faces = new int[FaceletMoves.FACELET_COUNT];
+        readFaces(state, faces);
+        CubieCube cc = new CubieCube();
+        cc.setFaces(faces);
+        return cc;
+    }
+
+    // faces[i] = face whose centre has the colour of facelet i
+    static void readFaces(String state, int[] faces) {
+        readFaces(state::charAt, faces);
+    }
+
+    static void readFaces(CubeModel model, int[] faces) {
+        readFaces(model::getFacelet, faces);
+    }
+
+    private static void readFaces(IntUnaryOperator facelet, int[] faces) {
+        for (int i = 0; i < FaceletMoves.FACELET_COUNT; i++) {
+            int c = facelet.applyAsInt(i);
+            int face = -1;
+            for (int f = 0; f < 6; f++) {
+                if (facelet.applyAsInt(f * 9 + 4) == c) {
+                    face = f;
+                    break;
+                }
+            }
+            if (face < 0)
+                throw new IllegalArgumentException("Unknown colour '" + (char) c + "' at facelet " + i);
+            faces[i] = face;
+        }
+    }
+
+    /**
+     * Writes this state as a 54-char facelet string in the standard colour scheme.
+     */
+    public String toFacelets() {
+        int[] faces = new int[FaceletMoves.FACELET_COUNT];
+        toFaces(faces);
+        char[] out = new char[FaceletMoves.FACELET_COUNT];
+        for (int i = 0; i < out.length; i++)
+            out[i] = CubeModel.colorOf(faces[i]);
+        return new String(out);
+    }
+
+    // faces[i] = face (0-5, Face order) whose colour facelet i shows
+    void toFaces(int[] faces) {
+        for (int f = 0; f < 6; f++)
+            faces[f * 9 + 4] = f;
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            int j = getCornerPermutation(i);
+            int ori = getCornerOrientation(i);
+            for (int n = 0; n < 3; n++)
+                faces[CORNER_FACELETS[i][(n + ori) % 3]] = CORNER_FACELETS[j][n] / 9;
+        }
+        for (int i = 0; i < EDGE_COUNT; i++) {
+            int j = getEdgePermutation(i);
+            int ori = getEdgeOrientation(i);
+            for (int n = 0; n < 2; n++)
+                faces[EDGE_FACELETS[i][(n + ori) % 2]] = EDGE_FACELETS[j][n] / 9;
+        }
+    }
+
+    // Inverse of toFaces, in place
+    void setFaces(int[] faces) {
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            int[] f = CORNER_FACELETS[i];
+            int ori = 0;
+            while (ori < 3 && faces[f[ori]] != Face.U.ordinal() && faces[f[ori]] != Face.D.ordinal())
+                ori++;
+            if (ori == 3)
+                throw new IllegalArgumentException("Corner " + i + " has no U/D sticker");
+            int cubie = CORNER_BY_FACES[faces[f[(ori + 1) % 3]] * 6 + faces[f[(ori + 2) % 3]]];
+            if (cubie < 0)
+                throw new IllegalArgumentException("Invalid corner at slot " + i);
+            corners[i] = (byte) (cubie | ori << 3);
+        }
+        for (int i = 0; i < EDGE_COUNT; i++) {
+            int edge = EDGE_BY_FACES[faces[EDGE_FACELETS[i][0]] * 6 + faces[EDGE_FACELETS[i][1]]];
+            if (edge < 0)
+                throw new IllegalArgumentException("Invalid edge at slot " + i);
+            edges[i] = (byte) edge;
+        }
+    }
+
+    // The single 4-cycle of a face turn, as a <- b <- c <- d <- a
+    private static int[] cycleOf(byte[] slots, int permMask) {
+        int start = 0;
+        while ((slots[start] & permMask) == start)
+            start++;
+        int[] cycle = new int[4];
+        int j = start;
+        for (int k = 0; k < 4; k++) {
+            cycle[k] = j;
+            j = slots[j] & permMask;
+        }
+        if (j != start)
+            throw new IllegalStateException("Face turn is not a 4-cycle");
+        return cycle;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof CubieCube))
+            return false;
+        CubieCube other = (CubieCube) o;
+        return Arrays.equals(corners, other.corners) && Arrays.equals(edges, other.edges);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(corners) + Arrays.hashCode(edges);
+    }
+
+    @Override
+    public String toString() {
+        return toFacelets();
+    }
+}
@@ -0,0 +1,236 @@
+package com.colorcube.model;
+
+/**
+ * Precomputed facelet permutations for every {@link Move}.
+ *
+ * The tables are built once by running the face/ring rotation rules over an
+ * identity index array, so a move becomes a plain permutation of the 54
+ * facelet indices: after move m, facelet i holds what was at PERM[m][i].
+ */
+public final class FaceletMoves {
+    public static final int FACELET_COUNT = 54;
+
+    private static final Move[] MOVES = Move.values();
+
+    // PERM[m][i] = source index of facelet i after move m
+    private static final int[][] PERM = new int[MOVES.length][];
+
+    // Non-trivial cycles of each permutation, flattened in groups of 4:
+    // (a, b, c, d) means a <- b <- c <- d <- a
+    private static final int[][] CYCLES = new int[MOVES.length][];
+
+    static {
+        for (Move m : MOVES) {
+            int[] perm = buildPermutation(m, getAdjacencyMap(m.getFace()));
+            PERM[m.ordinal()] = perm;
+            CYCLES[m.ordinal()] = toCycles(perm);
+        }
+    }
+
+    private FaceletMoves() {
+    }
+
+    /**
+     * Applies a move to a facelet array in place, one cycle at a time.
+     */
+    public static void apply(char[] facelets, Move move) {
+        int[] c = CYCLES[move.ordinal()];
+        for (int k = 0; k < c.length; k += 4) {
+            int i0 = c[k], i1 = c[k + 1], i2 = c[k + 2], i3 = c[k + 3];
+            char t = facelets[i0];
+            facelets[i0] = facelets[i1];
+            facelets[i1] = facelets[i2];
+            facelets[i2] = facelets[i3];
+            facelets[i3] = t;
+        }
+    }
+
+    /**
+     * Same as {@link #apply(char[], Move)}, also updating a Zobrist hash of
+     * the facelets from the 20 facelets that change.
+     */
+    static long apply(char[] facelets, Move move, long hash) {
+        int[] c = CYCLES[move.ordinal()];
+        for (int k = 0; k < c.length; k += 4) {
+            int i0 = c[k], i1 = c[k + 1], i2 = c[k + 2], i3 = c[k + 3];
+            char v0 = facelets[i0], v1 = facelets[i1], v2 = facelets[i2], v3 = facelets[i3];
+            facelets[i0] = v1;
+            facelets[i1] = v2;
+            facelets[i2] = v3;
+            facelets[i3] = v0;
+            hash ^= Zobrist.key(i0, v0) ^ Zobrist.key(i0, v1)
+                    ^ Zobrist.key(i1, v1) ^ Zobrist.key(i1, v2)
+                    ^ Zobrist.key(i2, v2) ^ Zobrist.key(i2, v3)
+                    ^ Zobrist.key(i3, v3) ^ Zobrist.key(i3, v0);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns a copy of the 54-entry permutation for a move.
+     */
+    public static int[] permutation(Move move) {
+        return PERM[move.ordinal()].clone();
+    }
+
+    static int[] perm(Move move) {
+        return PERM[move.ordinal()];
+    }
+
+    static int[] cycles(Move move) {
+        return CYCLES[move.ordinal()];
+    }
+
+    static int[] identity() {
+        int[] perm = new int[FACELET_COUNT];
+        for (int i = 0; i < FACELET_COUNT; i++)
+            perm[i] = i;
+        return perm;
+    }
+
+    private static int[] toCycles(int[] perm) {
+        boolean[] seen = new boolean[FACELET_COUNT];
+        int[] buf = new int[FACELET_COUNT];
+        int n = 0;
+        for (int i = 0; i < FACELET_COUNT; i++) {
+            if (seen[i] || perm[i] == i)
+                continue;
+            int len = 0;
+            for (int j = i; !seen[j]; j = perm[j]) {
+                seen[j] = true;
+                buf[n + len++] = j;
+            }
+            // Face turns only ever produce 4-cycles
+            if (len != 4)
+                throw new IllegalStateException("Unexpected cycle length " + len);
+            n += len;
+        }
+        int[] cycles = new int[n];
+        System.arraycopy(buf, 0, cycles, 0, n);
+        return cycles;
+    }
+
+    // Table generation: the original rotation rules, applied to index arrays
+
+    /**
+     * Runs the rotation rules for a move over an identity array, with
+     * {@code adj} as the ring of the turned face (see getAdjacencyMap).
+     */
+    static int[] buildPermutation(Move move, int[][] adj) {
+        int[] perm = identity();
+        if (move.getDir() == 1) {
+            rotateFaceSurface(perm, move.getFace());
+            rotateAdjacentLayers(perm, adj);
+        } else {
+            rotateFaceSurfaceCCW(perm, move.getFace());
+            rotateAdjacentLayersCCW(perm, adj);
+        }
+        return perm;
+    }
+
+    private static void rotateFaceSurface(int[] s, Face face) {
+        int offset = face.ordinal() * 9;
+        int[] temp = new int[9];
+        System.arraycopy(s, offset, temp, 0, 9);
+        // 0 1 2 6 3 0
+        // 3 4 5 -> 7 4 1
+        // 6 7 8 8 5 2
+        s[offset + 0] = temp[6];
+        s[offset + 1] = temp[3];
+        s[offset + 2] = temp[0];
+        s[offset + 3] = temp[7];
+        s[offset + 4] = temp[4]; // Center unchanged
+        s[offset + 5] = temp[1];
+        s[offset + 6] = temp[8];
+        s[offset + 7] = temp[5];
+        s[offset + 8] = temp[2];
+    }
+
+    private static void rotateFaceSurfaceCCW(int[] s, Face face) {
+        int offset = face.ordinal() * 9;
+        int[] temp = new int[9];
+        System.arraycopy(s, offset, temp, 0, 9);
+        // CCW mapping:
+        // 0 <- 2, 1 <- 5, 2 <- 8
+        // 3 <- 1, 4 <- 4, 5 <- 7
+        // 6 <- 0, 7 <- 3, 8 <- 6
+        s[offset + 0] = temp[2];
+        s[offset + 1] = temp[5];
+        s[offset + 2] = temp[8];
+        s[offset + 3] = temp[1];
+        s[offset + 4] = temp[4];
+        s[offset + 5] = temp[7];
+        s[offset + 6] = temp[0];
+        s[offset + 7] = temp[3];
+        s[offset + 8] = temp[6];
+    }
+
+    private static void rotateAdjacentLayers(int[] s, int[][] adj) {
+        int[] temp = new int[3];
+        // Save adj[0]
+        for (int i = 0; i < 3; i++)
+            temp[i] = s[adj[0][i]];
+
+        // adj[0] = adj[1]
+        for (int i = 0; i < 3; i++)
+            s[adj[0][i]] = s[adj[1][i]];
+
+        // adj[1] = adj[2]
+        for (int i = 0; i < 3; i++)
+            s[adj[1][i]] = s[adj[2][i]];
+
+        // adj[2] = adj[3]
+        for (int i = 0; i < 3; i++)
+            s[adj[2][i]] = s[adj[3][i]];
+
+        // adj[3] = temp
+        for (int i = 0; i < 3; i++)
+            s[adj[3][i]] = temp[i];
+    }
+
+    private static void rotateAdjacentLayersCCW(int[] s, int[][] adj) {
+        int[] temp = new int[3];
+
+        // Save adj[0]
+        for (int i = 0; i < 3; i++)
+            temp[i] = s[adj[0][i]];
+
+        // adj[0] = adj[3]
+        for (int i = 0; i < 3; i++)
+            s[adj[0][i]] = s[adj[3][i]];
+
+        // adj[3] = adj[2]
+        for (int i = 0; i < 3; i++)
+            s[adj[3][i]] = s[adj[2][i]];
+
+        // adj[2] = adj[1]
+        for (int i = 0; i < 3; i++)
+            s[adj[2][i]] = s[adj[1][i]];
+
+        // adj[1] = temp
+        for (int i = 0; i < 3; i++)
+            s[adj[1][i]] = temp[i];
+    }
+
+    // Ring k of a face takes side k+1 on a clockwise turn. The F and B rings
+    // differ from the original rules, which listed three of their sides in
+    // reverse and so split corners between cubies; these follow URFDLB
+    private static int[][] getAdjacencyMap(Face face) {
+        switch (face) {
+            case U:
+                return new int[][] { { 18, 19, 20 }, { 9, 10, 11 }, { 45, 46, 47 }, { 36, 37, 38 } };
+            case D:
+                return new int[][] { { 24, 25, 26 }, { 42, 43, 44 }, { 51, 52, 53 }, { 15, 16, 17 } };
+            case L:
+                return new int[][] { { 0, 3, 6 }, { 53, 50, 47 }, { 27, 30, 33 }, { 18, 21, 24 } };
+            case R:
+                return new int[][] { { 2, 5, 8 }, { 20, 23, 26 }, { 29, 32, 35 }, { 51, 48, 45 } };
+            case F:
+                return new int[][] { { 6, 7, 8 }, { 44, 41, 38 }, { 29, 28, 27 }, { 9, 12, 15 } };
+            case B:
+                return new int[][] { { 0, 1, 2 }, { 11, 14, 17 }, { 35, 34, 33 }, { 42, 39, 36 } };
+            default:
+                throw new IllegalArgumentException("Unknown face: " + face);
+        }
+    }
+}
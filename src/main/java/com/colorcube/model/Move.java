@@ -8,6 +8,8 @@ public enum Move {
     L(Face.L, 1), L_PRIME(Face.L, -1),
     B(Face.B, 1), B_PRIME(Face.B, -1);
 
+    private static final Move[] VALUES = values();
+
     private final Face face;
     private final int dir; // 1 = clockwise, -1 = counter-clockwise
 
@@ -28,6 +30,11 @@ public enum Move {
         return dir;
     }
 
+    public Move inverse() {
+        // Clockwise/counter-clockwise pairs sit next to each other
+        return VALUES[ordinal() ^ 1];
+    }
+
     @Override
     public String toString() {
         return face.toString() + (dir == -1 ? "'" : "");
@@ -0,0 +1,121 @@
+package com.colorcube.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Move history as one byte per move (the {@link Move} ordinal) plus a
+ * cursor, so undo and redo just move the cursor. Every
+ * {@link #CHECKPOINT_INTERVAL} moves the facelets are copied into a flat
+ * checkpoint buffer, which bounds the replay needed to reach any index.
+ */
+final class MoveLog {
+    static final int CHECKPOINT_INTERVAL = 64;
+    private static final int STATE_SIZE = FaceletMoves.FACELET_COUNT;
+    private static final Move[] MOVES = Move.values();
+
+    private byte[] moves = new byte[256];
+    private int size; // moves recorded, including undone ones that can be redone
+    private int cursor; // moves currently applied
+
+    // Checkpoint k = facelets after k * CHECKPOINT_INTERVAL moves
+    private char[] checkpoints = new char[STATE_SIZE * 16];
+    private int checkpointCount;
+
+    private final char[] replay = new char[STATE_SIZE];
+
+    /**
+     * Clears the log and makes {@code base} the state at index 0.
+     */
+    void reset(char[] base) {
+        size = 0;
+        cursor = 0;
+        checkpointCount = 0;
+        storeCheckpoint(0, base);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int cursor() {
+        return cursor;
+    }
+
+    /**
+     * Records a move just applied, dropping any redo tail.
+     */
+    void push(Move move, char[] stateAfter) {
+        truncate();
+        append(move);
+        if (cursor % CHECKPOINT_INTERVAL == 0)
+            storeCheckpoint(cursor / CHECKPOINT_INTERVAL, stateAfter);
+    }
+
+    /**
+     * Records a sequence applied in one go. Checkpoints that fall inside it
+     * are rebuilt by replaying from {@code stateBefore}.
+     */
+    void pushAll(List<Move> sequence, char[] stateBefore) {
+        truncate();
+        int lastCheckpoint = (cursor + sequence.size()) / CHECKPOINT_INTERVAL * CHECKPOINT_INTERVAL;
+        boolean needsReplay = lastCheckpoint > cursor;
+        if (needsReplay)
+            System.arraycopy(stateBefore, 0, replay, 0, STATE_SIZE);
+        for (Move m : sequence) {
+            append(m);
+            if (needsReplay && cursor <= lastCheckpoint) {
+                FaceletMoves.apply(replay, m);
+                if (cursor % CHECKPOINT_INTERVAL == 0)
+                    storeCheckpoint(cursor / CHECKPOINT_INTERVAL, replay);
+            }
+        }
+    }
+
+    Move peekUndo() {
+        return cursor == 0 ? null : MOVES[moves[cursor - 1]];
+    }
+
+    Move peekRedo() {
+        return cursor == size ? null : MOVES[moves[cursor]];
+    }
+
+    Move undo() {
+        return cursor == 0 ? null : MOVES[moves[--cursor]];
+    }
+
+    Move redo() {
+        return cursor == size ? null : MOVES[moves[cursor++]];
+    }
+
+    /**
+     * Copies the closest checkpoint at or before {@code index} into
+     * {@code state}, moves the cursor there and returns its index.
+     */
+    int restoreCheckpoint(int index, char[] state) {
+        int k = Math.min(index / CHECKPOINT_INTERVAL, checkpointCount - 1);
+        System.arraycopy(checkpoints, k * STATE_SIZE, state, 0, STATE_SIZE);
+        cursor = k * CHECKPOINT_INTERVAL;
+        return cursor;
+    }
+
+    private void truncate() {
+        size = cursor;
+        checkpointCount = Math.min(checkpointCount, cursor / CHECKPOINT_INTERVAL + 1);
+    }
+
+    private void append(Move move) {
+        if (size == moves.length)
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        moves[size++] = (byte) move.ordinal();
+        cursor = size;
+    }
+
+    private void storeCheckpoint(int k, char[] state) {
+        int end = (k + 1) * STATE_SIZE;
+        if (end > checkpoints.length)
+            checkpoints = Arrays.copyOf(checkpoints, Math.max(end, checkpoints.length * 2));
+        System.arraycopy(state, 0, checkpoints, k * STATE_SIZE, STATE_SIZE);
+        checkpointCount = k + 1;
+    }
+}
@@ -0,0 +1,146 @@
+package com.colorcube.model;
+
+/**
+ * Immutable, bit-packed facelet state: 3 bits per facelet, 54 facelets in
+ * three longs (21 + 21 + 12 facelets). Each facelet holds the face index
+ * (0-5, {@link Face} order) of its colour in the standard scheme.
+ *
+ * Meant as a compact key for large state sets; see {@link PackedStateSet}.
+ */
+public final class PackedState {
+    static final int BITS = 3;
+    static final int PER_WORD = 21;
+    private static final long MASK = (1L << BITS) - 1;
+
+    public static final PackedState SOLVED = fromFacelets(CubeModel.SOLVED_STATE);
+
+    final long w0, w1, w2;
+
+    PackedState(long w0, long w1, long w2) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+    }
+
+    public static PackedState of(CubeModel model) {
+        return new PackedState(pack(model, 0), pack(model, 1), pack(model, 2));
+    }
+
+    public static PackedState fromFacelets(String state) {
+        if (state.length() != FaceletMoves.FACELET_COUNT) {
+            throw new IllegalArgumentException("State must be 54 characters");
+        }
+        return new PackedState(pack(state, 0), pack(state, 1), pack(state, 2));
+    }
+
+    // faces[i] = face index of facelet i, as CubieCube.toFaces writes them
+    static PackedState fromFaces(int[] faces) {
+        return new PackedState(pack(faces, 0), pack(faces, 1), pack(faces, 2));
+    }
+
+    private static long pack(CubeModel model, int word) {
+        long w = 0;
+        int end = Math.min((word + 1) * PER_WORD, FaceletMoves.FACELET_COUNT);
+        for (int i = word * PER_WORD, k = 0; i < end; i++, k++)
+            w |= (long) code(model.getFacelet(i), i) << (k * BITS);
+        return w;
+    }
+
+    private static long pack(String state, int word) {
+        long w = 0;
+        int end = Math.min((word + 1) * PER_WORD, FaceletMoves.FACELET_COUNT);
+        for (int i = word * PER_WORD, k = 0; i < end; i++, k++)
+            w |= (long) code(state.charAt(i), i) << (k * BITS);
+        return w;
+    }
+
+    private static long pack(int[] faces, int word) {
+        long w = 0;
+        int end = Math.min((word + 1) * PER_WORD, FaceletMoves.FACELET_COUNT);
+        for (int i = word * PER_WORD, k = 0; i < end; i++, k++)
+            w |= (long) faces[i] << (k * BITS);
+        return w;
+    }
+
+    private static int code(char c, int index) {
+        int code = CubeModel.colorIndex(c);
+        if (code < 0)
+            throw new IllegalArgumentException("Unknown colour '" + c + "' at facelet " + index);
+        return code;
+    }
+
+    /**
+     * Returns the face index (0-5) of the colour at a facelet.
+     */
+    public int get(int index) {
+        long w = index < PER_WORD ? w0 : index < 2 * PER_WORD ? w1 : w2;
+        return (int) (w >>> ((index % PER_WORD) * BITS) & MASK);
+    }
+
+    public String toFaceletString() {
+        char[] out = new char[FaceletMoves.FACELET_COUNT];
+        for (int i = 0; i < out.length; i++)
+            out[i] = CubeModel.colorOf(get(i));
+        return new String(out);
+    }
+
+    /**
+     * Overwrites the model's facelets with this state.
+     */
+    public void loadInto(CubeModel model) {
+        model.setFacelets(toFaceletString());
+    }
+
+    public PackedState apply(Move move) {
+        int[] perm = FaceletMoves.perm(move);
+        long n0 = 0, n1 = 0, n2 = 0;
+        int i = 0;
+        for (int k = 0; k < PER_WORD; k++, i++)
+            n0 |= (long) get(perm[i]) << (k * BITS);
+        for (int k = 0; k < PER_WORD; k++, i++)
+            n1 |= (long) get(perm[i]) << (k * BITS);
+        for (int k = 0; i < FaceletMoves.FACELET_COUNT; k++, i++)
+            n2 |= (long) get(perm[i]) << (k * BITS);
+        return new PackedState(n0, n1, n2);
+    }
+
+    public long getWord(int i) {
+        switch (i) {
+            case 0:
+                return w0;
+            case 1:
+                return w1;
+            case 2:
+                return w2;
+            default:
+                throw new IndexOutOfBoundsException("Word " + i);
+        }
+    }
+
+    static long hash(long w0, long w1, long w2) {
+        long h = w0 * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 32) ^ w1) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 29) ^ w2) * 0x165667B19E3779F9L;
+        return h ^ (h >>> 32);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PackedState))
+            return false;
+        PackedState other = (PackedState) o;
+        return w0 == other.w0 && w1 == other.w1 && w2 == other.w2;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) hash(w0, w1, w2);
+    }
+
+    @Override
+    public String toString() {
+        return toFaceletString();
+    }
+}
@@ -0,0 +1,138 @@
+package com.colorcube.model;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of {@link PackedState}s, stored as three
+ * parallel {@code long[]} columns with linear probing. That is 24 bytes per
+ * slot and no per-entry objects, so 10M states take roughly 400 MB.
+ *
+ * Not thread-safe.
+ */
+public final class PackedStateSet {
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // The third word only uses 36 bits, so its top bit marks an occupied slot
+    private static final long OCCUPIED = 1L << 63;
+
+    private long[] k0, k1, k2;
+    private int size;
+    private int threshold;
+
+    public PackedStateSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a set sized to hold {@code expectedSize} states without rehashing.
+     */
+    public PackedStateSet(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Negative size: " + expectedSize);
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(PackedState s) {
+        return contains(s.w0, s.w1, s.w2);
+    }
+
+    /**
+     * Adds a state. Returns false if it was already present.
+     */
+    public boolean add(PackedState s) {
+        return add(s.w0, s.w1, s.w2);
+    }
+
+    boolean contains(long w0, long w1, long w2) {
+        long tag = w2 | OCCUPIED;
+        int mask = k0.length - 1;
+        for (int i = slot(w0, w1, w2, mask);; i = (i + 1) & mask) {
+            long t = k2[i];
+            if (t == 0)
+                return false;
+            if (t == tag && k0[i] == w0 && k1[i] == w1)
+                return true;
+        }
+    }
+
+    boolean add(long w0, long w1, long w2) {
+        long tag = w2 | OCCUPIED;
+        int mask = k0.length - 1;
+        int i = slot(w0, w1, w2, mask);
+        for (;; i = (i + 1) & mask) {
+            long t = k2[i];
+            if (t == 0)
+                break;
+            if (t == tag && k0[i] == w0 && k1[i] == w1)
+                return false;
+        }
+        k0[i] = w0;
+        k1[i] = w1;
+        k2[i] = tag;
+        if (++size > threshold)
+            rehash(k0.length * 2);
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(k2, 0L);
+        size = 0;
+    }
+
+    /**
+     * Approximate heap footprint of the table columns in bytes.
+     */
+    public long memoryBytes() {
+        return 3L * Long.BYTES * k0.length;
+    }
+
+    private static int slot(long w0, long w1, long w2, int mask) {
+        return (int) PackedState.hash(w0, w1, w2) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (needed > MAX_CAPACITY)
+            throw new IllegalArgumentException("Too many states: " + expectedSize);
+        int cap = MIN_CAPACITY;
+        while (cap < needed)
+            cap <<= 1;
+        return cap;
+    }
+
+    private void allocate(int capacity) {
+        k0 = new long[capacity];
+        k1 = new long[capacity];
+        k2 = new long[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCapacity) {
+        if (newCapacity > MAX_CAPACITY)
+            throw new IllegalStateException("PackedStateSet is full");
+        long[] o0 = k0, o1 = k1, o2 = k2;
+        allocate(newCapacity);
+        int mask = newCapacity - 1;
+        for (int j = 0; j < o2.length; j++) {
+            long tag = o2[j];
+            if (tag == 0)
+                continue;
+            int i = slot(o0[j], o1[j], tag & ~OCCUPIED, mask);
+            while (k2[i] != 0)
+                i = (i + 1) & mask;
+            k0[i] = o0[j];
+            k1[i] = o1[j];
+            k2[i] = tag;
+        }
+    }
+}
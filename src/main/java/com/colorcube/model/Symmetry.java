@@ -0,0 +1,292 @@
+package com.colorcube.model;
+
+import java.util.Arrays;
+
+/**
+ * The 48 symmetries of the cube (24 rotations, each with and without a
+ * mirror) and canonicalisation of states under them.
+ *
+ * A symmetry is a signed permutation matrix acting on the 3D facelet
+ * positions. Conjugating a state by it moves every sticker to its image
+ * and relabels the colours so the centres stay put, which gives the same
+ * state seen from another side (or in a mirror). Two states related this
+ * way share a canonical form.
+ *
+ * Everything is precomputed into per-slot lookup tables, so canonicalising
+ * a {@link CubieCube} costs 20 table lookups per symmetry and no allocation.
+ */
+public final class Symmetry {
+    public static final int COUNT = 48;
+
+    private static final int CORNER_STRIDE = 24; // packed corner values 0..23
+    private static final int EDGE_STRIDE = 32; // packed edge values 0..27
+    private static final int BITS = 5; // per slot in a key
+
+    // FACELET_PERM[s][i] = where facelet i goes under symmetry s
+    private static final int[][] FACELET_PERM = new int[COUNT][FaceletMoves.FACELET_COUNT];
+    // FACE_MAP[s][f] = face that face f's colour is relabelled to
+    private static final int[][] FACE_MAP = new int[COUNT][6];
+    private static final boolean[] MIRROR = new boolean[COUNT];
+
+    // Per-thread buffers for canonicalState(CubeModel)
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    // CORNER_KEY[s][slot * 24 + packed] = the conjugated cubie, already
+    // shifted into its new slot's 5 bits; EDGE_KEY likewise
+    private static final long[][] CORNER_KEY = new long[COUNT][CubieCube.CORNER_COUNT * CORNER_STRIDE];
+    private static final long[][] EDGE_KEY = new long[COUNT][CubieCube.EDGE_COUNT * EDGE_STRIDE];
+
+    static {
+        int[][] pos = faceletPositions();
+        int[][] normals = new int[6][];
+        for (int f = 0; f < 6; f++)
+            normals[f] = faceNormal(pos[f * 9 + 4]);
+
+        int s = 0;
+        int[][] axisOrders = { { 0, 1, 2 }, { 0, 2, 1 }, { 1, 0, 2 }, { 1, 2, 0 }, { 2, 0, 1 }, { 2, 1, 0 } };
+        for (int[] order : axisOrders) {
+            for (int signs = 0; signs < 8; signs++) {
+                int[][] m = new int[3][3];
+                for (int r = 0; r < 3; r++)
+                    m[r][order[r]] = (signs >> r & 1) == 0 ? 1 : -1;
+                // Identity comes first: order {0,1,2}, signs 0
+                buildSymmetry(s++, m, pos, normals);
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    public static boolean isMirror(int sym) {
+        return MIRROR[sym];
+    }
+
+    /**
+     * Sets {@code out} to {@code c} conjugated by symmetry {@code sym}.
+     * {@code out} must not alias {@code c}.
+     */
+    public static void conjugate(CubieCube c, int sym, CubieCube out) {
+        decode(cornerKey(c, sym), edgeKey(c, sym), out);
+    }
+
+    /**
+     * Conjugates a facelet string by a symmetry.
+     */
+    public static String conjugate(String facelets, int sym) {
+        char[] out = new char[FaceletMoves.FACELET_COUNT];
+        int[] perm = FACELET_PERM[sym];
+        for (int i = 0; i < out.length; i++) {
+            int face = CubeModel.colorIndex(facelets.charAt(i));
+            if (face < 0)
+                throw new IllegalArgumentException("Unknown colour '" + facelets.charAt(i) + "' at facelet " + i);
+            out[perm[i]] = CubeModel.colorOf(FACE_MAP[sym][face]);
+        }
+        return new String(out);
+    }
+
+    /**
+     * Writes the canonical representative of {@code c}'s symmetry class to
+     * {@code out} and returns the symmetry that maps {@code c} onto it.
+     * {@code out} must not alias {@code c}.
+     */
+    public static int canonicalize(CubieCube c, CubieCube out) {
+        long bestEdges = Long.MAX_VALUE, bestCorners = Long.MAX_VALUE;
+        int best = 0;
+        for (int s = 0; s < COUNT; s++) {
+            long e = edgeKey(c, s);
+            if (e > bestEdges)
+                continue;
+            long k = cornerKey(c, s);
+            if (e < bestEdges || k < bestCorners) {
+                bestEdges = e;
+                bestCorners = k;
+                best = s;
+            }
+        }
+        decode(bestCorners, bestEdges, out);
+        return best;
+    }
+
+    /**
+     * Canonical form of a model's state, as a compact key for sets and maps.
+     * Converts the facelets to cubies and back, so searches that already
+     * work on a {@link CubieCube} should call
+     * {@link #canonicalize(CubieCube, CubieCube)} instead.
+     *
+     * @throws IllegalArgumentException if the stickers do not form valid cubies
+     */
+    public static PackedState canonicalState(CubeModel model) {
+        Scratch s = SCRATCH.get();
+        int[] faces = s.faces;
+        CubieCube.readFaces(model, faces);
+        s.in.setFaces(faces);
+        canonicalize(s.in, s.out);
+        s.out.toFaces(faces);
+        return PackedState.fromFaces(faces);
+    }
+
+    private static long cornerKey(CubieCube c, int sym) {
+        long[] t = CORNER_KEY[sym];
+        byte[] corners = c.corners;
+        long k = 0;
+        for (int i = 0; i < CubieCube.CORNER_COUNT; i++)
+            k |= t[i * CORNER_STRIDE + corners[i]];
+        return k;
+    }
+
+    private static long edgeKey(CubieCube c, int sym) {
+        long[] t = EDGE_KEY[sym];
+        byte[] edges = c.edges;
+        long k = 0;
+        for (int i = 0; i < CubieCube.EDGE_COUNT; i++)
+            k |= t[i * EDGE_STRIDE + edges[i]];
+        return k;
+    }
+
+    private static void decode(long cornerKey, long edgeKey, CubieCube out) {
+        for (int i = 0; i < CubieCube.CORNER_COUNT; i++)
+            out.corners[i] = (byte) (cornerKey >>> (i * BITS) & 31);
+        for (int i = 0; i < CubieCube.EDGE_COUNT; i++)
+            out.edges[i] = (byte) (edgeKey >>> (i * BITS) & 31);
+    }
+
+    private static final class Scratch {
+        final int[] faces = new int[FaceletMoves.FACELET_COUNT];
+        final CubieCube in = new CubieCube();
+        final CubieCube out = new CubieCube();
+    }
+
+    // Table construction
+
+    private static void buildSymmetry(int s, int[][] m, int[][] pos, int[][] normals) {
+        MIRROR[s] = determinant(m) < 0;
+        for (int i = 0; i < FaceletMoves.FACELET_COUNT; i++)
+            FACELET_PERM[s][i] = indexOf(pos, transform(m, pos[i]));
+        for (int f = 0; f < 6; f++) {
+            int[] n = transform(m, normals[f]);
+            for (int g = 0; g < 6; g++)
+                if (Arrays.equals(n, normals[g]))
+                    FACE_MAP[s][f] = g;
+        }
+
+        int[] faces = new int[FaceletMoves.FACELET_COUNT];
+        for (int slot = 0; slot < CubieCube.CORNER_COUNT; slot++) {
+            for (int cubie = 0; cubie < CubieCube.CORNER_COUNT; cubie++) {
+                for (int ori = 0; ori < 3; ori++) {
+                    int[] src = CubieCube.CORNER_FACELETS[slot];
+                    int target = 0;
+                    for (int n = 0; n < 3; n++) {
+                        int dst = FACELET_PERM[s][src[(n + ori) % 3]];
+                        faces[dst] = FACE_MAP[s][CubieCube.CORNER_FACELETS[cubie][n] / 9];
+                        target = dst;
+                    }
+                    int newSlot = cornerSlotOf(target);
+                    int packed = decodeCorner(faces, newSlot);
+                    CORNER_KEY[s][slot * CORNER_STRIDE + (cubie | ori << 3)] = (long) packed << (newSlot * BITS);
+                }
+            }
+        }
+        for (int slot = 0; slot < CubieCube.EDGE_COUNT; slot++) {
+            for (int cubie = 0; cubie < CubieCube.EDGE_COUNT; cubie++) {
+                for (int ori = 0; ori < 2; ori++) {
+                    int[] src = CubieCube.EDGE_FACELETS[slot];
+                    int target = 0;
+                    for (int n = 0; n < 2; n++) {
+                        int dst = FACELET_PERM[s][src[(n + ori) % 2]];
+                        faces[dst] = FACE_MAP[s][CubieCube.EDGE_FACELETS[cubie][n] / 9];
+                        target = dst;
+                    }
+                    int newSlot = edgeSlotOf(target);
+                    int packed = decodeEdge(faces, newSlot);
+                    EDGE_KEY[s][slot * EDGE_STRIDE + (cubie | ori << 4)] = (long) packed << (newSlot * BITS);
+                }
+            }
+        }
+    }
+
+    private static int decodeCorner(int[] faces, int slot) {
+        int[] f = CubieCube.CORNER_FACELETS[slot];
+        int ori = 0;
+        while (faces[f[ori]] != Face.U.ordinal() && faces[f[ori]] != Face.D.ordinal())
+            ori++;
+        int col1 = faces[f[(ori + 1) % 3]], col2 = faces[f[(ori + 2) % 3]];
+        for (int j = 0; j < CubieCube.CORNER_COUNT; j++) {
+            if (CubieCube.CORNER_FACELETS[j][1] / 9 == col1 && CubieCube.CORNER_FACELETS[j][2] / 9 == col2)
+                return j | ori << 3;
+        }
+        throw new IllegalStateException("Symmetry broke a corner");
+    }
+
+    private static int decodeEdge(int[] faces, int slot) {
+        int a = faces[CubieCube.EDGE_FACELETS[slot][0]], b = faces[CubieCube.EDGE_FACELETS[slot][1]];
+        for (int j = 0; j < CubieCube.EDGE_COUNT; j++) {
+            int ja = CubieCube.EDGE_FACELETS[j][0] / 9, jb = CubieCube.EDGE_FACELETS[j][1] / 9;
+            if (a == ja && b == jb)
+                return j;
+            if (a == jb && b == ja)
+                return j | 1 << 4;
+        }
+        throw new IllegalStateException("Symmetry broke an edge");
+    }
+
+    private static int cornerSlotOf(int facelet) {
+        for (int i = 0; i < CubieCube.CORNER_COUNT; i++)
+            for (int f : CubieCube.CORNER_FACELETS[i])
+                if (f == facelet)
+                    return i;
+        throw new IllegalStateException("Not a corner facelet: " + facelet);
+    }
+
+    private static int edgeSlotOf(int facelet) {
+        for (int i = 0; i < CubieCube.EDGE_COUNT; i++)
+            for (int f : CubieCube.EDGE_FACELETS[i])
+                if (f == facelet)
+                    return i;
+        throw new IllegalStateException("Not an edge facelet: " + facelet);
+    }
+
+    // Sticker centre of each facelet in doubled coordinates (2 * cubie + normal),
+    // using the same layout as Cube3DPanel: x right, y down, z front
+    private static int[][] faceletPositions() {
+        int[][] pos = new int[FaceletMoves.FACELET_COUNT][];
+        for (int a = -1; a <= 1; a++) {
+            for (int b = -1; b <= 1; b++) {
+                pos[(b + 1) * 3 + (a + 1)] = new int[] { 2 * a, -3, 2 * b }; // U: x=a, z=b
+                pos[9 + (b + 1) * 3 + (1 - a)] = new int[] { 3, 2 * b, 2 * a }; // R: z=a, y=b
+                pos[18 + (b + 1) * 3 + (a + 1)] = new int[] { 2 * a, 2 * b, 3 }; // F: x=a, y=b
+                pos[27 + (1 - b) * 3 + (a + 1)] = new int[] { 2 * a, 3, 2 * b }; // D: x=a, z=b
+                pos[36 + (b + 1) * 3 + (a + 1)] = new int[] { -3, 2 * b, 2 * a }; // L: z=a, y=b
+                pos[45 + (b + 1) * 3 + (1 - a)] = new int[] { 2 * a, 2 * b, -3 }; // B: x=a, y=b
+            }
+        }
+        return pos;
+    }
+
+    private static int[] faceNormal(int[] centre) {
+        int[] n = new int[3];
+        for (int k = 0; k < 3; k++)
+            n[k] = Integer.signum(centre[k]);
+        return n;
+    }
+
+    private static int[] transform(int[][] m, int[] v) {
+        int[] r = new int[3];
+        for (int i = 0; i < 3; i++)
+            r[i] = m[i][0] * v[0] + m[i][1] * v[1] + m[i][2] * v[2];
+        return r;
+    }
+
+    private static int indexOf(int[][] pos, int[] p) {
+        for (int i = 0; i < pos.length; i++)
+            if (Arrays.equals(pos[i], p))
+                return i;
+        throw new IllegalStateException("No facelet at transformed position");
+    }
+
+    private static int determinant(int[][] m) {
+        return m[0][0] * (m[1][1] * m[2][2] - m[1][2] * m[2][1])
+                - m[0][1] * (m[1][0] * m[2][2] - m[1][2] * m[2][0])
+                + m[0][2] * (m[1][0] * m[2][1] - m[1][1] * m[2][0]);
+    }
+}
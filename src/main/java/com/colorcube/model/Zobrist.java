@@ -0,0 +1,34 @@
+package com.colorcube.model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for facelet states: one random 64-bit key per (facelet,
+ * colour) pair, XORed together. A move only touches 20 facelets, so the
+ * hash is updated from those instead of rehashing all 54.
+ */
+final class Zobrist {
+    // 8 slots per facelet: the six scheme colours, and slot 7 for anything else
+    private static final long[] KEYS = new long[FaceletMoves.FACELET_COUNT * 8];
+
+    static {
+        // Fixed seed so hashes are stable across runs
+        SplittableRandom rnd = new SplittableRandom(0x5A0B815EC0BEL);
+        for (int i = 0; i < KEYS.length; i++)
+            KEYS[i] = rnd.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    static long key(int index, char c) {
+        return KEYS[index << 3 | (CubeModel.colorIndex(c) & 7)];
+    }
+
+    static long hash(char[] facelets) {
+        long h = 0;
+        for (int i = 0; i < FaceletMoves.FACELET_COUNT; i++)
+            h ^= key(i, facelets[i]);
+        return h;
+    }
+}
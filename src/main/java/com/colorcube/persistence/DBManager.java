@@ -15,6 +15,14 @@ import com.colorcube.model.Face;
 public class DBManager {
     private static final String DB_URL = "jdbc:sqlite:cube_practice.db";
 
+    /**
+     * Version of the facelet strings written by {@link #saveProgress}.
+     * Version 1 states were made by the original F and B turns, which moved
+     * some stickers to the wrong places; those that are not a valid cube
+     * cannot be restored.
+     */
+    public static final int FORMAT_VERSION = 2;
+
     public DBManager() {
         initializeDatabase();
     }
@@ -27,9 +35,13 @@ public class DBManager {
                     "id INTEGER PRIMARY KEY AUTOINCREMENT," +
                     "name TEXT NOT NULL," +
                     "facelet_string TEXT NOT NULL," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                    "format_version INTEGER NOT NULL DEFAULT 1" +
                     ");";
             stmt.execute(sql);
+            // Databases from before the column existed hold version 1 rows
+            if (!hasColumn(conn, "saved_progress", "format_version"))
+                stmt.execute("ALTER TABLE saved_progress ADD COLUMN format_version INTEGER NOT NULL DEFAULT 1");
 
             String metaSql = "CREATE TABLE IF NOT EXISTS metadata (" +
                     "key TEXT PRIMARY KEY," +
@@ -43,14 +55,26 @@ public class DBManager {
         }
     }
 
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name")))
+                    return true;
+            }
+        }
+        return false;
+    }
+
     public void saveProgress(String name, String facelets) {
-        String sql = "INSERT INTO saved_progress(name, facelet_string) VALUES(?,?)";
+        String sql = "INSERT INTO saved_progress(name, facelet_string, format_version) VALUES(?,?,?)";
 
         try (Connection conn = DriverManager.getConnection(DB_URL);
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, name);
             pstmt.setString(2, facelets);
+            pstmt.setInt(3, FORMAT_VERSION);
 
             pstmt.executeUpdate();
         } catch (SQLException e) {
@@ -73,7 +97,8 @@ public class DBManager {
 
     public List<SavedSession> loadAllProgress() {
         List<SavedSession> sessions = new ArrayList<>();
-        String sql = "SELECT id, name, facelet_string, created_at FROM saved_progress ORDER BY created_at DESC";
+        String sql = "SELECT id, name, facelet_string, created_at, format_version FROM saved_progress "
+                + "ORDER BY created_at DESC";
 
         try (Connection conn = DriverManager.getConnection(DB_URL);
                 Statement stmt = conn.createStatement();
@@ -85,6 +110,7 @@ public class DBManager {
                 s.name = rs.getString("name");
                 s.faceletString = rs.getString("facelet_string");
                 s.createdAt = rs.getString("created_at");
+                s.formatVersion = rs.getInt("format_version");
                 sessions.add(s);
             }
         } catch (SQLException e) {
@@ -99,6 +125,7 @@ public class DBManager {
         public String name;
         public String faceletString;
         public String createdAt;
+        public int formatVersion;
 
         @Override
         public String toString() {
@@ -0,0 +1,217 @@
+package com.colorcube.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed lookup tables stored in a binary file and memory-mapped on
+ * load, so they live off-heap, are shared through the OS page cache and
+ * need no generation after the first launch.
+ *
+ * File layout (little-endian):
+ * <pre>
+ *   int  magic "VCCT"
+ *   int  file format version
+ *   int  table version (chosen by the caller)
+ *   int  section count n
+ *   long CRC32 of everything after the header
+ *   long n section lengths
+ *   sections, each starting on an 8-byte boundary
+ * </pre>
+ *
+ * A missing file or a version or size mismatch causes the tables to be
+ * regenerated into a temporary file which then atomically replaces the old
+ * one. If the file cannot be written the generated tables are kept in
+ * memory for this run only.
+ *
+ * Reading the whole file for its checksum would defeat mapping it, so a
+ * loaded file is checked on a background thread instead. A file that fails
+ * is marked invalid, so the next launch rebuilds it.
+ */
+public final class TableFile {
+    private static final int MAGIC = 0x56434354; // "VCCT"
+    private static final int FORMAT_VERSION = 1;
+    private static final int FIXED_HEADER = 24;
+
+    /**
+     * Fills freshly allocated, zeroed sections with the table contents.
+     */
+    public interface Generator {
+        void generate(ByteBuffer[] sections);
+    }
+
+    private TableFile() {
+    }
+
+    /**
+     * Location of a table file, next to the practice database.
+     */
+    public static Path path(String fileName) {
+        return Paths.get(fileName);
+    }
+
+    /**
+     * Returns read-only little-endian views of each section, mapping the
+     * file if its header matches and (re)building it otherwise.
+     */
+    public static ByteBuffer[] load(Path path, int version, long[] sectionSizes, Generator generator) {
+        try {
+            ByteBuffer[] sections = tryMap(path, version, sectionSizes, true);
+            if (sections != null)
+                return sections;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+
+        ByteBuffer buf = build(version, sectionSizes, generator);
+        try {
+            write(path, buf);
+            // Just written from buf, so its checksum is already known to match
+            ByteBuffer[] sections = tryMap(path, version, sectionSizes, false);
+            if (sections != null)
+                return sections;
+            throw new IOException("Rebuilt table file failed validation: " + path);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        // Could not use the file; keep what was generated for this run
+        return readOnly(slice(buf, headerSize(sectionSizes.length), sectionSizes));
+    }
+
+    // The header is read through the channel, so a stale file is never
+    // mapped; a mapping would keep it open until GC and, on Windows, block
+    // the rebuilt file from replacing it
+    private static ByteBuffer[] tryMap(Path path, int version, long[] sizes, boolean check) throws IOException {
+        if (!Files.isRegularFile(path))
+            return null;
+        int headerSize = headerSize(sizes.length);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() != headerSize + payloadSize(sizes))
+                return null;
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(ch, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION || header.getInt(8) != version
+                    || header.getInt(12) != sizes.length)
+                return null;
+            for (int i = 0; i < sizes.length; i++)
+                if (header.getLong(FIXED_HEADER + 8 * i) != sizes[i])
+                    return null;
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (check) {
+                long expected = header.getLong(16);
+                Thread.ofVirtual().name("table-check").start(() -> check(path, map, headerSize, expected));
+            }
+            // The mapping stays valid after the channel is closed
+            return slice(map, headerSize, sizes);
+        }
+    }
+
+    // Runs in the background, reading through the mapping the tables
+    // already use, so the pages it touches stay useful
+    private static void check(Path path, ByteBuffer map, int headerSize, long expected) {
+        CRC32 crc = new CRC32();
+        crc.update(map.duplicate().position(headerSize));
+        if (crc.getValue() == expected)
+            return;
+        System.err.println("Table file " + path + " failed its checksum; it will be rebuilt on the next launch");
+        // Zero the magic through the channel; the mapping is read-only
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(4), 0);
+        } catch (IOException e) {
+            System.err.println("Could not mark " + path + " invalid: " + e);
+        }
+    }
+
+    // Header and sections in one heap buffer, ready to write
+    private static ByteBuffer build(int version, long[] sizes, Generator generator) {
+        int headerSize = headerSize(sizes.length);
+        ByteBuffer buf = ByteBuffer.allocate((int) (headerSize + payloadSize(sizes))).order(ByteOrder.LITTLE_ENDIAN);
+        generator.generate(slice(buf, headerSize, sizes));
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, FORMAT_VERSION);
+        buf.putInt(8, version);
+        buf.putInt(12, sizes.length);
+        for (int i = 0; i < sizes.length; i++)
+            buf.putLong(FIXED_HEADER + 8 * i, sizes[i]);
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().position(headerSize));
+        buf.putLong(16, crc.getValue());
+        return buf;
+    }
+
+    // Written through the channel, so the temp file is not mapped when it
+    // is moved into place
+    private static void write(Path path, ByteBuffer buf) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer out = buf.duplicate().clear();
+                while (out.hasRemaining())
+                    ch.write(out);
+                ch.force(true);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep the original failure; a leftover temp file is secondary
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            throw e;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0)
+                throw new IOException("Unexpected end of file");
+        }
+    }
+
+    private static ByteBuffer[] slice(ByteBuffer buf, int offset, long[] sizes) {
+        ByteBuffer[] sections = new ByteBuffer[sizes.length];
+        long pos = offset;
+        for (int i = 0; i < sizes.length; i++) {
+            sections[i] = buf.slice((int) pos, (int) sizes[i]).order(ByteOrder.LITTLE_ENDIAN);
+            pos += align(sizes[i]);
+        }
+        return sections;
+    }
+
+    private static ByteBuffer[] readOnly(ByteBuffer[] sections) {
+        for (int i = 0; i < sections.length; i++)
+            sections[i] = sections[i].asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        return sections;
+    }
+
+    private static int headerSize(int sectionCount) {
+        return (int) align(FIXED_HEADER + 8L * sectionCount);
+    }
+
+    private static long payloadSize(long[] sizes) {
+        long total = 0;
+        for (long s : sizes)
+            total += align(s);
+        return total;
+    }
+
+    private static long align(long n) {
+        return (n + 7) & ~7L;
+    }
+}
@@ -0,0 +1,179 @@
+package com.colorcube.ui;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+/**
+ * Active rendering for the 3D view: a {@link Canvas} with a triple-buffered
+ * {@link BufferStrategy}, drawn by a dedicated render thread.
+ *
+ * The EDT never draws. It only hands over {@link ViewSnapshot}s through
+ * {@link #submit}; the render thread draws the latest one and drops any it
+ * did not get to, so a slow frame cannot hold up input handling and a burst
+ * of input cannot queue up frames. With nothing submitted the thread
+ * sleeps.
+ */
+final class ActiveRenderer {
+    private static final int BUFFERS = 3;
+
+    private final Canvas canvas;
+    private final Color background;
+    private final CubeRenderer renderer = new CubeRenderer();
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    private ViewSnapshot next;
+    private boolean running;
+    private Thread thread;
+
+    private volatile long frames;
+    private volatile RenderStats stats;
+
+    /**
+     * @param onExpose called on the EDT when the canvas needs a new frame
+     *                 that no state change will provide, e.g. after a resize
+     */
+    ActiveRenderer(Color background, Runnable onExpose) {
+        this.background = background;
+        canvas = new Canvas() {
+            @Override
+            public void addNotify() {
+                super.addNotify();
+                createBufferStrategy(BUFFERS);
+            }
+
+            // Never draw on the EDT; ask for a frame instead
+            @Override
+            public void paint(Graphics g) {
+                onExpose.run();
+            }
+
+            @Override
+            public void update(Graphics g) {
+                onExpose.run();
+            }
+        };
+        canvas.setBackground(background);
+    }
+
+    Canvas getCanvas() {
+        return canvas;
+    }
+
+    void start() {
+        synchronized (lock) {
+            if (running)
+                return;
+            running = true;
+            thread = new Thread(this::renderLoop, "cube-render");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the render thread and waits for its current frame to finish.
+     */
+    void stop() {
+        Thread t;
+        synchronized (lock) {
+            running = false;
+            next = null;
+            lock.notifyAll();
+            t = thread;
+            thread = null;
+        }
+        if (t == null)
+            return;
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Replaces the frame to draw next.
+     */
+    void submit(ViewSnapshot snapshot) {
+        synchronized (lock) {
+            next = snapshot;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Measures the frames drawn from now on and draws the overlay; null to
+     * stop.
+     */
+    void setStats(RenderStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Frames drawn so far.
+     */
+    long getFrameCount() {
+        return frames;
+    }
+
+    private void renderLoop() {
+        while (true) {
+            ViewSnapshot snapshot;
+            synchronized (lock) {
+                while (running && next == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running)
+                    return;
+                snapshot = next;
+                next = null;
+            }
+            draw(snapshot);
+        }
+    }
+
+    private void draw(ViewSnapshot snapshot) {
+        BufferStrategy strategy = canvas.getBufferStrategy();
+        int w = canvas.getWidth();
+        int h = canvas.getHeight();
+        if (strategy == null || w <= 0 || h <= 0)
+            return;
+        RenderStats stats = this.stats;
+        long start = 0, bytes = 0;
+        if (stats != null) {
+            start = System.nanoTime();
+            bytes = RenderStats.allocatedBytes();
+        }
+        try {
+            // Redraw until the buffers survive both drawing and showing
+            do {
+                do {
+                    Graphics2D g2 = (Graphics2D) strategy.getDrawGraphics();
+                    try {
+                        renderer.paint(g2, snapshot, w, h, background);
+                        if (stats != null)
+                            stats.paintOverlay(g2);
+                    } finally {
+                        g2.dispose();
+                    }
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
+            frames++;
+            if (stats != null)
+                stats.frameDrawn(start, bytes, renderer.getQuadCount(), snapshot.inputsApplied);
+        } catch (IllegalStateException e) {
+            // The canvas lost its peer while closing; nothing to draw on
+        }
+    }
+}
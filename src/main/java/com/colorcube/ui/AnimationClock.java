@@ -0,0 +1,94 @@
+package com.colorcube.ui;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.Timer;
+
+/**
+ * One clock for everything that moves in a view. While any animation is
+ * active it ticks once per display frame, advances every animation to the
+ * same {@link System#nanoTime()} timestamp and then asks for a single
+ * repaint. With nothing active it stops ticking altogether.
+ *
+ * Only used on the EDT.
+ */
+final class AnimationClock {
+    private static final int DEFAULT_REFRESH_RATE = 60; // Hz
+
+    interface Animation {
+        /**
+         * Advances to {@code nowNanos}. An animation that has finished
+         * calls {@link AnimationClock#stop} itself.
+         */
+        void tick(long nowNanos);
+    }
+
+    private final Runnable repaint;
+    private final Timer timer;
+    private final List<Animation> active = new ArrayList<>();
+    // Reused copy of active, so animations may start and stop while ticking
+    private Animation[] ticking = new Animation[4];
+    private long ticks;
+
+    AnimationClock(Runnable repaint) {
+        this.repaint = repaint;
+        timer = new Timer(1000 / refreshRate(), e -> tick());
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Starts ticking the animation, if it is not already. The clock wakes up
+     * if it was idle.
+     */
+    void start(Animation animation) {
+        if (!active.contains(animation))
+            active.add(animation);
+        if (!timer.isRunning())
+            timer.start();
+    }
+
+    void stop(Animation animation) {
+        active.remove(animation);
+    }
+
+    boolean isActive(Animation animation) {
+        return active.contains(animation);
+    }
+
+    boolean isIdle() {
+        return active.isEmpty();
+    }
+
+    /**
+     * Frames ticked so far.
+     */
+    long getTickCount() {
+        return ticks;
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        ticks++;
+        int n = active.size();
+        ticking = active.toArray(ticking);
+        for (int i = 0; i < n; i++) {
+            ticking[i].tick(now);
+            ticking[i] = null;
+        }
+        repaint.run();
+        if (active.isEmpty())
+            timer.stop();
+    }
+
+    private static int refreshRate() {
+        if (GraphicsEnvironment.isHeadless())
+            return DEFAULT_REFRESH_RATE;
+        DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDisplayMode();
+        int rate = mode.getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : rate;
+    }
+}
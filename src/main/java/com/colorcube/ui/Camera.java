@@ -0,0 +1,134 @@
+package com.colorcube.ui;
+
+import java.util.Arrays;
+
+/**
+ * Orientation of the 3D view: a rotation matrix from cube space to view
+ * space (x right, y down, z depth), stored row-major in 9 doubles.
+ *
+ * Drags compose small rotations about the view axes onto the current
+ * orientation, so there are no Euler angles to wrap or lock up.
+ */
+final class Camera {
+    static final int X_AXIS = 0;
+    static final int Y_AXIS = 1;
+    static final int Z_AXIS = 2;
+
+    // The original Euler view: pitch about X first, then yaw about Y
+    private static final double INITIAL_PITCH = -30;
+    private static final double INITIAL_YAW = 45;
+
+    private final double[] m = new double[9];
+    private final double[] step = new double[9];
+    private final double[] tmp = new double[9];
+    private long version;
+
+    Camera() {
+        reset();
+    }
+
+    void reset() {
+        rotation(X_AXIS, INITIAL_PITCH, m);
+        rotateView(Y_AXIS, INITIAL_YAW);
+        version++;
+    }
+
+    /**
+     * Turns the cube about the view's vertical axis, then its horizontal
+     * axis, by the given angles in degrees.
+     */
+    void rotate(double yawDegrees, double pitchDegrees) {
+        rotateView(Y_AXIS, yawDegrees);
+        rotateView(X_AXIS, pitchDegrees);
+        orthonormalize();
+        version++;
+    }
+
+    /**
+     * Changes whenever the orientation does.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    void copyTo(double[] out) {
+        System.arraycopy(m, 0, out, 0, 9);
+    }
+
+    /**
+     * Writes the rotation by {@code degrees} about a coordinate axis into
+     * out. Positive angles turn y towards z about X, z towards x about Y
+     * and x towards y about Z.
+     */
+    static void rotation(int axis, double degrees, double[] out) {
+        double rad = Math.toRadians(degrees);
+        double c = Math.cos(rad);
+        double s = Math.sin(rad);
+        Arrays.fill(out, 0, 9, 0);
+        switch (axis) {
+            case X_AXIS:
+                out[0] = 1;
+                out[4] = c;
+                out[5] = -s;
+                out[7] = s;
+                out[8] = c;
+                break;
+            case Y_AXIS:
+                out[0] = c;
+                out[2] = s;
+                out[4] = 1;
+                out[6] = -s;
+                out[8] = c;
+                break;
+            case Z_AXIS:
+                out[0] = c;
+                out[1] = -s;
+                out[3] = s;
+                out[4] = c;
+                out[8] = 1;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid axis: " + axis);
+        }
+    }
+
+    /**
+     * out = a * b. out must not be a or b.
+     */
+    static void multiply(double[] a, double[] b, double[] out) {
+        for (int r = 0; r < 3; r++)
+            for (int c = 0; c < 3; c++)
+                out[r * 3 + c] = a[r * 3] * b[c] + a[r * 3 + 1] * b[3 + c] + a[r * 3 + 2] * b[6 + c];
+    }
+
+    // Applies the rotation after the current one, i.e. in view space
+    private void rotateView(int axis, double degrees) {
+        rotation(axis, degrees, step);
+        multiply(step, m, tmp);
+        System.arraycopy(tmp, 0, m, 0, 9);
+    }
+
+    // Repeated products slowly drift away from a rotation; Gram-Schmidt on
+    // the rows pulls the matrix back
+    private void orthonormalize() {
+        normalizeRow(0);
+        double d = dot(1, 0);
+        for (int c = 0; c < 3; c++)
+            m[3 + c] -= d * m[c];
+        normalizeRow(1);
+        // Third row is the cross product of the first two
+        m[6] = m[1] * m[5] - m[2] * m[4];
+        m[7] = m[2] * m[3] - m[0] * m[5];
+        m[8] = m[0] * m[4] - m[1] * m[3];
+    }
+
+    private double dot(int r1, int r2) {
+        return m[r1 * 3] * m[r2 * 3] + m[r1 * 3 + 1] * m[r2 * 3 + 1] + m[r1 * 3 + 2] * m[r2 * 3 + 2];
+    }
+
+    private void normalizeRow(int r) {
+        double len = Math.sqrt(dot(r, r));
+        for (int c = 0; c < 3; c++)
+            m[r * 3 + c] /= len;
+    }
+}
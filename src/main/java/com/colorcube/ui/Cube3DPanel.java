@@ -1,67 +1,125 @@
 package com.colorcube.ui;
 
+import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Color;
-import java.awt.GradientPaint;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
-import java.awt.geom.GeneralPath;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import javax.swing.JPanel;
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
 import com.colorcube.model.CubeModel;
-import com.colorcube.model.Face;
 import com.colorcube.model.Move;
 
 public class Cube3DPanel extends JPanel {
     private CubeModel model;
-    private double pitch = -30; // Rotation around X axis
-    private double yaw = 45; // Rotation around Y axis
+    private final Camera camera = new Camera();
     private double scale = 100; // Zoom level
 
     private int lastX, lastY;
+    // Drag not yet applied to the camera; taken up by the next frame
+    private double dragYaw, dragPitch;
+
+    // Everything that moves in this view runs off one clock
+    private final AnimationClock clock = new AnimationClock(this::repaint);
+    private final AnimationClock.Animation turn = this::tickTurn;
+    private final AnimationClock.Animation spin = this::tickSpin;
+
+    // Camera inertia: after a fling the view keeps turning and slows down
+    private static final double DEGREES_PER_PIXEL = 0.5;
+    private static final double SPIN_DECAY_SECONDS = 0.35; // Time constant
+    private static final double MIN_SPIN = 20; // deg/s; slower spins stop
+    private static final long FLING_NANOS = 60_000_000; // Release within this of the last drag
+    private double spinYaw, spinPitch; // deg/s
+    private long lastDragNanos;
+    private long lastSpinNanos;
 
     // Animation state
     private Move currentMove;
     private boolean isUndo = false;
     private double animProgress; // 0.0 to 1.0
-    private Timer animTimer;
+    private long animStartNanos;
     private Runnable onAnimComplete;
-    private static final int ANIM_DURATION = 200; // ms
+    private int animDuration; // ms
+    static final int ANIM_DURATION = 200; // Default, ms
+
+    private final CubeRenderer renderer = new CubeRenderer();
+    private boolean softwareRendering;
+
+    // Last rendered frame, at device resolution, and the snapshot it shows.
+    // Repaints that change nothing (expose, layout of other panels) just
+    // blit it. The background and look and feel are not in the snapshot, so
+    // changing them drops the frame
+    private BufferedImage frame;
+    private ViewSnapshot frameView;
+    private long cacheHits;
+    private long cacheMisses;
+
+    // Set while a render thread draws the view instead of paintComponent
+    private ActiveRenderer active;
+    private volatile boolean framePosted;
+
+    // Set while frames and input latency are measured
+    private RenderStats stats;
+    private final MouseAdapter input;
 
     public Cube3DPanel(CubeModel model) {
         this.model = model;
         setBackground(Color.DARK_GRAY);
+        setLayout(new BorderLayout());
 
-        MouseAdapter ma = new MouseAdapter() {
+        input = new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
                 lastX = e.getX();
                 lastY = e.getY();
+                // Catch a spinning cube
+                clock.stop(spin);
+                spinYaw = spinPitch = 0;
+                lastDragNanos = System.nanoTime();
             }
 
             @Override
             public void mouseDragged(MouseEvent e) {
                 int dx = e.getX() - lastX;
                 int dy = e.getY() - lastY;
-
-                yaw += dx * 0.5;
-                pitch += dy * 0.5;
+                double yaw = dx * DEGREES_PER_PIXEL;
+                double pitch = dy * DEGREES_PER_PIXEL;
+
+                dragYaw += yaw;
+                dragPitch += pitch;
+
+                // Smoothed drag speed, used if the drag ends in a fling
+                long now = System.nanoTime();
+                double dt = (now - lastDragNanos) / 1e9;
+                if (dt > 0) {
+                    spinYaw += 0.3 * (yaw / dt - spinYaw);
+                    spinPitch += 0.3 * (pitch / dt - spinPitch);
+                }
+                lastDragNanos = now;
 
                 lastX = e.getX();
                 lastY = e.getY();
                 repaint();
             }
 
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                long now = System.nanoTime();
+                if (now - lastDragNanos < FLING_NANOS && Math.hypot(spinYaw, spinPitch) > MIN_SPIN) {
+                    lastSpinNanos = now;
+                    clock.start(spin);
+                }
+            }
+
             @Override
             public void mouseWheelMoved(MouseWheelEvent e) {
                 scale -= e.getPreciseWheelRotation() * 5;
@@ -73,426 +131,253 @@ public class Cube3DPanel extends JPanel {
             }
         };
 
-        addMouseListener(ma);
-        addMouseMotionListener(ma);
-        addMouseWheelListener(ma);
+        addMouseListener(input);
+        addMouseMotionListener(input);
+        addMouseWheelListener(input);
     }
 
     public void animateMove(Move move, Runnable onComplete) {
-        if (animTimer != null && animTimer.isRunning())
+        animateMove(move, ANIM_DURATION, onComplete);
+    }
+
+    public void animateMove(Move move, int durationMillis, Runnable onComplete) {
+        if (isAnimating())
             return;
 
         this.currentMove = move;
         this.onAnimComplete = onComplete;
         this.animProgress = 0;
         this.isUndo = false;
+        this.animDuration = durationMillis;
 
         startAnimation();
     }
 
     public void animateUndo(Move move, Runnable onComplete) {
-        if (animTimer != null && animTimer.isRunning())
+        animateUndo(move, ANIM_DURATION, onComplete);
+    }
+
+    public void animateUndo(Move move, int durationMillis, Runnable onComplete) {
+        if (isAnimating())
             return;
 
         this.currentMove = move;
         this.onAnimComplete = onComplete;
         this.animProgress = 0;
         this.isUndo = true;
+        this.animDuration = durationMillis;
 
         startAnimation();
     }
 
     private void startAnimation() {
-        animTimer = new Timer(15, new ActionListener() {
-            long startTime = -1;
-
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                if (startTime == -1)
-                    startTime = System.currentTimeMillis();
-                long elapsed = System.currentTimeMillis() - startTime;
-                animProgress = (double) elapsed / ANIM_DURATION;
-
-                if (animProgress >= 1.0) {
-                    animProgress = 1.0;
-                    animTimer.stop();
-                    currentMove = null;
-                    isUndo = false;
-                    if (onAnimComplete != null)
-                        onAnimComplete.run();
-                }
-                repaint();
-            }
-        });
-        animTimer.start();
-    }
-
-    public boolean isAnimating() {
-        return animTimer != null && animTimer.isRunning();
+        animStartNanos = System.nanoTime();
+        clock.start(turn);
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g;
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-        int w = getWidth();
-        int h = getHeight();
-
-        // Center of screen
-        double cx = w / 2.0;
-        double cy = h / 2.0;
-
-        List<FaceletQuad> quads = new ArrayList<>();
-
-        // Generate 27 cubies
-        for (int x = -1; x <= 1; x++) {
-            for (int y = -1; y <= 1; y++) {
-                for (int z = -1; z <= 1; z++) {
-                    addCubie(quads, x, y, z);
-                }
-            }
-        }
-
-        // Sort by Z (Painter's algorithm)
-        Collections.sort(quads);
-
-        // Draw
-        for (FaceletQuad q : quads) {
-            drawQuad(g2, q, cx, cy);
+    private void tickTurn(long now) {
+        animProgress = (now - animStartNanos) / (animDuration * 1e6);
+        if (animProgress >= 1.0) {
+            animProgress = 1.0;
+            clock.stop(turn);
+            currentMove = null;
+            isUndo = false;
+            if (onAnimComplete != null)
+                onAnimComplete.run();
         }
     }
 
-    private void addCubie(List<FaceletQuad> quads, int x, int y, int z) {
-        // Determine if this cubie is affected by animation
-        boolean animating = false;
-        if (currentMove != null) {
-            switch (currentMove.getFace()) {
-                case U:
-                    if (y == -1)
-                        animating = true;
-                    break;
-                case D:
-                    if (y == 1)
-                        animating = true;
-                    break;
-                case L:
-                    if (x == -1)
-                        animating = true;
-                    break;
-                case R:
-                    if (x == 1)
-                        animating = true;
-                    break;
-                case F:
-                    if (z == 1)
-                        animating = true;
-                    break;
-                case B:
-                    if (z == -1)
-                        animating = true;
-                    break;
-            }
-        }
-
-        // Add 6 faces for this cubie
-        addCubieFace(quads, x, y, z, Face.U, animating);
-        addCubieFace(quads, x, y, z, Face.D, animating);
-        addCubieFace(quads, x, y, z, Face.F, animating);
-        addCubieFace(quads, x, y, z, Face.B, animating);
-        addCubieFace(quads, x, y, z, Face.L, animating);
-        addCubieFace(quads, x, y, z, Face.R, animating);
+    private void tickSpin(long now) {
+        double dt = (now - lastSpinNanos) / 1e9;
+        lastSpinNanos = now;
+        camera.rotate(spinYaw * dt, spinPitch * dt);
+        double decay = Math.exp(-dt / SPIN_DECAY_SECONDS);
+        spinYaw *= decay;
+        spinPitch *= decay;
+        if (Math.hypot(spinYaw, spinPitch) < MIN_SPIN)
+            clock.stop(spin);
     }
 
-    private void addCubieFace(List<FaceletQuad> quads, int x, int y, int z, Face face, boolean animating) {
-        // Determine color
-        Color color = Color.BLACK;
-        String faceletsStr = model.getFaceletString();
-
-        // Check if this face is on the surface
-        boolean isSurface = false;
-        int index = -1;
-
-        switch (face) {
-            case U:
-                if (y == -1) {
-                    isSurface = true;
-                    index = (z + 1) * 3 + (x + 1); // 0-8
-                }
-                break;
-            case D:
-                if (y == 1) {
-                    isSurface = true;
-                    index = 27 + (1 - z) * 3 + (x + 1); // 27-35
-                }
-                break;
-            case F:
-                if (z == 1) {
-                    isSurface = true;
-                    index = 18 + (y + 1) * 3 + (x + 1); // 18-26
-                }
-                break;
-            case B:
-                if (z == -1) {
-                    isSurface = true;
-                    index = 45 + (y + 1) * 3 + (1 - x); // 45-53
-                }
-                break;
-            case L:
-                if (x == -1) {
-                    isSurface = true;
-                    index = 36 + (y + 1) * 3 + (z + 1); // 36-44
-                }
-                break;
-            case R:
-                if (x == 1) {
-                    isSurface = true;
-                    index = 9 + (y + 1) * 3 + (1 - z); // 9-17
-                }
-                break;
-        }
+    public boolean isAnimating() {
+        return currentMove != null;
+    }
 
-        if (isSurface && index >= 0 && index < 54) {
-            color = getColor(faceletsStr.charAt(index));
-        }
+    /**
+     * Switches between painting with Java2D and the z-buffered software
+     * rasterizer.
+     */
+    public void setSoftwareRendering(boolean software) {
+        softwareRendering = software;
+        repaint();
+    }
 
-        // Geometry
-        double cx = x, cy = y, cz = z;
-        double uX = 0, uY = 0, uZ = 0;
-        double vX = 0, vY = 0, vZ = 0;
-
-        // Face normal and basis vectors
-        switch (face) {
-            case U: // Up (y-)
-                cy -= 0.5;
-                uX = 1;
-                vZ = 1;
-                break;
-            case D: // Down (y+)
-                cy += 0.5;
-                uX = 1;
-                vZ = -1;
-                break;
-            case F: // Front (z+)
-                cz += 0.5;
-                uX = 1;
-                vY = 1;
-                break;
-            case B: // Back (z-)
-                cz -= 0.5;
-                uX = -1;
-                vY = 1;
-                break;
-            case L: // Left (x-)
-                cx -= 0.5;
-                uZ = 1;
-                vY = 1;
-                break;
-            case R: // Right (x+)
-                cx += 0.5;
-                uZ = -1;
-                vY = 1;
-                break;
-        }
+    public boolean isSoftwareRendering() {
+        return softwareRendering;
+    }
 
-        Point3D[] verts = new Point3D[4];
-        // P = C + a*U + b*V where a,b in {-0.5, 0.5}
-        for (int i = 0; i < 4; i++) {
-            double a = (i == 1 || i == 2) ? 0.5 : -0.5;
-            double b = (i == 2 || i == 3) ? 0.5 : -0.5;
+    public long getCacheHits() {
+        return cacheHits;
+    }
 
-            // Calculate vertex position
-            // uX, uY, uZ are components of U vector
-            // vX, vY, vZ are components of V vector
-            double vx = cx + a * uX + b * vX;
-            double vy = cy + a * uY + b * vY;
-            double vz = cz + a * uZ + b * vZ;
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
 
-            verts[i] = new Point3D(vx, vy, vz);
-        }
+    /**
+     * Fraction of repaints served from the cached frame, 0 to 1.
+     */
+    public double getCacheHitRate() {
+        long total = cacheHits + cacheMisses;
+        return total == 0 ? 0 : (double) cacheHits / total;
+    }
 
-        if (animating) {
-            for (int i = 0; i < 4; i++) {
-                verts[i] = applyAnimationTransform(verts[i]);
-            }
+    /**
+     * Switches to active rendering: a render thread draws the view into a
+     * triple-buffered canvas from snapshots taken on the EDT, instead of
+     * Swing painting it. Not available headless.
+     */
+    public void setActiveRendering(boolean enabled) {
+        if (enabled == (active != null))
+            return;
+        if (enabled) {
+            active = new ActiveRenderer(getBackground(), this::requestFrame);
+            active.setStats(stats);
+            Canvas canvas = active.getCanvas();
+            // A heavyweight canvas receives mouse events itself
+            canvas.addMouseListener(input);
+            canvas.addMouseMotionListener(input);
+            canvas.addMouseWheelListener(input);
+            add(canvas, BorderLayout.CENTER);
+            active.start();
+        } else {
+            active.stop();
+            remove(active.getCanvas());
+            active = null;
         }
-
-        quads.add(new FaceletQuad(verts, color));
+        revalidate();
+        repaint();
     }
 
-    private Point3D applyAnimationTransform(Point3D p) {
-        // Apply rotation
-        double angle = 90.0 * animProgress;
-        if (isUndo)
-            angle = -angle;
-
-        // Axis of rotation
-        double ax = 0, ay = 0, az = 0;
-        switch (currentMove.getFace()) {
-            case U:
-                ay = 1;
-                break;
-            case D:
-                ay = 1;
-                break;
-            case R:
-                ax = 1;
-                break;
-            case L:
-                ax = 1;
-                break;
-            case F:
-                az = 1;
-                break;
-            case B:
-                az = 1;
-                break;
-        }
+    public boolean isActiveRendering() {
+        return active != null;
+    }
 
-        // Fix angles based on previous derivation
-        switch (currentMove.getFace()) {
-            case U:
-                angle *= -1;
-                break;
-            case D:
-                angle *= 1;
-                break;
-            case R:
-                angle *= 1;
-                break;
-            case L:
-                angle *= -1;
-                break;
-            case F:
-                angle *= 1;
-                break;
-            case B:
-                angle *= -1;
-                break;
-        }
+    /**
+     * Starts or stops measuring frame times, quads drawn, allocation and
+     * key press latency, shown in an overlay on the view. Starting again
+     * begins with empty statistics.
+     */
+    public void setStatsOverlay(boolean enabled) {
+        stats = enabled ? new RenderStats() : null;
+        if (active != null)
+            active.setStats(stats);
+        repaint();
+    }
 
-        return rotatePoint(p, ax, ay, az, angle);
+    public boolean isStatsOverlay() {
+        return stats != null;
     }
 
-    private Point3D rotatePoint(Point3D p, double ax, double ay, double az, double angleDeg) {
-        double rad = Math.toRadians(angleDeg);
-        double c = Math.cos(rad);
-        double s = Math.sin(rad);
-
-        double x = p.x, y = p.y, z = p.z;
-        double nx = x, ny = y, nz = z;
-
-        if (ax > 0.5) { // X axis
-            ny = y * c - z * s;
-            nz = y * s + z * c;
-        } else if (ay > 0.5) { // Y axis
-            nx = x * c + z * s;
-            nz = -x * s + z * c;
-        } else if (az > 0.5) { // Z axis
-            nx = x * c - y * s;
-            ny = x * s + y * c;
-        }
+    /**
+     * Writes the statistics shown in the overlay as CSV.
+     */
+    public void writeStats(Path file) throws IOException {
+        if (stats == null)
+            throw new IllegalStateException("Statistics are off");
+        stats.writeCsv(file);
+    }
 
-        return new Point3D(nx, ny, nz);
+    RenderStats getStats() {
+        return stats;
     }
 
-    private Color getColor(char code) {
-        switch (code) {
-            case 'W':
-                return Color.WHITE;
-            case 'R':
-                return Color.RED;
-            case 'G':
-                return Color.GREEN;
-            case 'Y':
-                return Color.YELLOW;
-            case 'O':
-                return new Color(255, 100, 0); // Orange (Darker)
-            case 'B':
-                return new Color(30, 144, 255);
-            default:
-                return Color.GRAY;
-        }
+    // In active mode every repaint request becomes one snapshot for the
+    // render thread, however many requests arrive before the EDT gets to it
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        if (active != null)
+            requestFrame();
+        else
+            super.repaint(tm, x, y, width, height);
     }
 
-    private void drawQuad(Graphics2D g2, FaceletQuad q, double cx, double cy) {
-        GeneralPath path = new GeneralPath();
-        Point3D p0 = project(q.verts[0]);
-        path.moveTo(cx + p0.x, cy + p0.y);
+    private void requestFrame() {
+        if (framePosted)
+            return;
+        framePosted = true;
+        SwingUtilities.invokeLater(() -> {
+            framePosted = false;
+            if (active != null)
+                active.submit(snapshot());
+        });
+    }
 
-        Point3D p2 = null;
+    private ViewSnapshot snapshot() {
+        applyDrag();
+        return new ViewSnapshot(model, camera, scale, currentMove, isUndo, animProgress, softwareRendering,
+                appliedCount());
+    }
 
-        for (int i = 1; i < 4; i++) {
-            Point3D p = project(q.verts[i]);
-            path.lineTo(cx + p.x, cy + p.y);
-            if (i == 2)
-                p2 = p;
-        }
-        path.closePath();
-
-        // Shine using GradientPaint from top-left (p0) to bottom-right (p2)
-        if (p2 != null) {
-            // Brighter color for shine
-            Color c1 = q.color.brighter();
-            GradientPaint gp = new GradientPaint(
-                    (float) (cx + p0.x), (float) (cy + p0.y), c1,
-                    (float) (cx + p2.x), (float) (cy + p2.y), q.color);
-            g2.setPaint(gp);
-        } else {
-            g2.setColor(q.color);
+    // Applies the drag received since the last frame, so that a burst of
+    // mouse events turns the camera once per frame
+    private void applyDrag() {
+        if (dragYaw != 0 || dragPitch != 0) {
+            camera.rotate(dragYaw, dragPitch);
+            dragYaw = dragPitch = 0;
         }
-
-        g2.fill(path);
-        g2.setColor(Color.BLACK);
-        g2.draw(path);
     }
 
-    private Point3D project(Point3D p) {
-        // Rotate around X (pitch)
-        double y1 = p.y * Math.cos(Math.toRadians(pitch)) - p.z * Math.sin(Math.toRadians(pitch));
-        double z1 = p.y * Math.sin(Math.toRadians(pitch)) + p.z * Math.cos(Math.toRadians(pitch));
-
-        // Rotate around Y (yaw)
-        double x2 = p.x * Math.cos(Math.toRadians(yaw)) + z1 * Math.sin(Math.toRadians(yaw));
-        double z2 = -p.x * Math.sin(Math.toRadians(yaw)) + z1 * Math.cos(Math.toRadians(yaw));
-
-        return new Point3D(x2 * scale, y1 * scale, z2);
+    private long appliedCount() {
+        return stats != null ? stats.getAppliedCount() : 0;
     }
 
-    private static class Point3D {
-        double x, y, z;
-
-        Point3D(double x, double y, double z) {
-            this.x = x;
-            this.y = y;
-            this.z = z;
-        }
+    @Override
+    public void setBackground(Color bg) {
+        super.setBackground(bg);
+        frameView = null;
     }
 
-    private class FaceletQuad implements Comparable<FaceletQuad> {
-        Point3D[] verts;
-        Color color;
+    @Override
+    public void updateUI() {
+        super.updateUI();
+        frameView = null;
+    }
 
-        FaceletQuad(Point3D[] verts, Color color) {
-            this.verts = verts;
-            this.color = color;
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (active != null)
+            return; // Covered by the canvas
+        Graphics2D g2 = (Graphics2D) g;
+        int w = getWidth();
+        int h = getHeight();
+        if (w <= 0 || h <= 0)
+            return;
+        long start = 0, bytes = 0;
+        if (stats != null) {
+            start = System.nanoTime();
+            bytes = RenderStats.allocatedBytes();
         }
 
-        @Override
-        public int compareTo(FaceletQuad o) {
-            double z1 = getTransformedZ();
-            double z2 = o.getTransformedZ();
-            return Double.compare(z2, z1);
+        // Render at device resolution so that scaled (HiDPI) screens stay sharp
+        AffineTransform tx = g2.getTransform();
+        int iw = (int) Math.ceil(w * tx.getScaleX());
+        int ih = (int) Math.ceil(h * tx.getScaleY());
+        applyDrag();
+        int quads = -1;
+        if (frame != null && frame.getWidth() == iw && frame.getHeight() == ih && frameView != null
+                && frameView.shows(model, camera, scale, currentMove, isUndo, animProgress, softwareRendering)) {
+            cacheHits++;
+        } else {
+            cacheMisses++;
+            frameView = snapshot();
+            frame = renderer.renderImage(frameView, iw, ih, w, h, getBackground(), getGraphicsConfiguration());
+            quads = renderer.getQuadCount();
         }
+        g2.drawImage(frame, 0, 0, w, h, null);
 
-        double getTransformedZ() {
-            double sum = 0;
-            for (Point3D p : verts) {
-                Point3D proj = project(p);
-                sum += proj.z;
-            }
-            return sum / 4.0;
+        if (stats != null) {
+            stats.frameDrawn(start, bytes, quads, appliedCount());
+            stats.paintOverlay(g2);
         }
     }
 }
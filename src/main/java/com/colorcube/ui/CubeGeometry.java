@@ -0,0 +1,149 @@
+package com.colorcube.ui;
+
+import com.colorcube.model.Face;
+
+/**
+ * Static geometry of the 27 cubies, computed once: 6 unit quads per cubie
+ * (162 in total), stored in flat arrays indexed by quad.
+ *
+ * Coordinates match the rest of the 3D view: x right, y down, z front,
+ * cubie centres at -1, 0, 1. Vertices of a quad are C + a*U + b*V for
+ * (a, b) = (-,-), (+,-), (+,+), (-,+), where C is the face centre and U, V
+ * span the face. U x V is the outward normal for every quad, so a quad
+ * facing the viewer has a consistent winding on screen.
+ */
+final class CubeGeometry {
+    static final int QUAD_COUNT = 27 * 6;
+    static final int VERTS_PER_QUAD = 4;
+
+    // VERTICES[(q * 4 + v) * 3 + k] = coordinate k of vertex v of quad q
+    static final double[] VERTICES = new double[QUAD_COUNT * VERTS_PER_QUAD * 3];
+    // Facelet index shown by the quad, or -1 for a face inside the cube
+    static final int[] FACELET = new int[QUAD_COUNT];
+    // Direction the quad faces, as a Face ordinal
+    static final int[] DIRECTION = new int[QUAD_COUNT];
+    // Bit f is set if the quad's cubie turns with face f
+    static final int[] LAYERS = new int[QUAD_COUNT];
+
+    private static final Face[] QUAD_FACES = { Face.U, Face.D, Face.F, Face.B, Face.L, Face.R };
+
+    static {
+        int q = 0;
+        for (int x = -1; x <= 1; x++)
+            for (int y = -1; y <= 1; y++)
+                for (int z = -1; z <= 1; z++)
+                    for (Face face : QUAD_FACES)
+                        addQuad(q++, x, y, z, face);
+    }
+
+    private CubeGeometry() {
+    }
+
+    /**
+     * Whether quad q can be seen at all while face {@code turning} (a Face
+     * ordinal, or -1) is being turned. Faces inside the cube are hidden,
+     * except the ones the turn opens up: the inner side of the turning layer
+     * and the facing side of the layer next to it.
+     */
+    static boolean isReachable(int q, int turning) {
+        if (FACELET[q] >= 0)
+            return true;
+        if (turning < 0)
+            return false;
+        int opposite = (turning + 3) % 6; // Face order is U R F D L B
+        int layers = LAYERS[q];
+        if ((layers & 1 << turning) != 0)
+            return DIRECTION[q] == opposite;
+        // Middle layer along the turning axis
+        if ((layers & (1 << opposite)) == 0)
+            return DIRECTION[q] == turning;
+        return false;
+    }
+
+    private static void addQuad(int q, int x, int y, int z, Face face) {
+        DIRECTION[q] = face.ordinal();
+        LAYERS[q] = layerBits(x, y, z);
+        FACELET[q] = faceletIndex(x, y, z, face);
+
+        double cx = x, cy = y, cz = z;
+        double uX = 0, uY = 0, uZ = 0;
+        double vX = 0, vY = 0, vZ = 0;
+        switch (face) {
+            case U: // Up (y-)
+                cy -= 0.5;
+                uX = 1;
+                vZ = 1;
+                break;
+            case D: // Down (y+)
+                cy += 0.5;
+                uX = 1;
+                vZ = -1;
+                break;
+            case F: // Front (z+)
+                cz += 0.5;
+                uX = 1;
+                vY = 1;
+                break;
+            case B: // Back (z-)
+                cz -= 0.5;
+                uX = -1;
+                vY = 1;
+                break;
+            case L: // Left (x-)
+                cx -= 0.5;
+                uZ = 1;
+                vY = 1;
+                break;
+            case R: // Right (x+)
+                cx += 0.5;
+                uZ = -1;
+                vY = 1;
+                break;
+        }
+
+        for (int i = 0; i < VERTS_PER_QUAD; i++) {
+            double a = (i == 1 || i == 2) ? 0.5 : -0.5;
+            double b = (i == 2 || i == 3) ? 0.5 : -0.5;
+            int o = (q * VERTS_PER_QUAD + i) * 3;
+            VERTICES[o] = cx + a * uX + b * vX;
+            VERTICES[o + 1] = cy + a * uY + b * vY;
+            VERTICES[o + 2] = cz + a * uZ + b * vZ;
+        }
+    }
+
+    private static int layerBits(int x, int y, int z) {
+        int bits = 0;
+        if (y == -1)
+            bits |= 1 << Face.U.ordinal();
+        if (y == 1)
+            bits |= 1 << Face.D.ordinal();
+        if (x == -1)
+            bits |= 1 << Face.L.ordinal();
+        if (x == 1)
+            bits |= 1 << Face.R.ordinal();
+        if (z == 1)
+            bits |= 1 << Face.F.ordinal();
+        if (z == -1)
+            bits |= 1 << Face.B.ordinal();
+        return bits;
+    }
+
+    private static int faceletIndex(int x, int y, int z, Face face) {
+        switch (face) {
+            case U:
+                return y == -1 ? (z + 1) * 3 + (x + 1) : -1; // 0-8
+            case D:
+                return y == 1 ? 27 + (1 - z) * 3 + (x + 1) : -1; // 27-35
+            case F:
+                return z == 1 ? 18 + (y + 1) * 3 + (x + 1) : -1; // 18-26
+            case B:
+                return z == -1 ? 45 + (y + 1) * 3 + (1 - x) : -1; // 45-53
+            case L:
+                return x == -1 ? 36 + (y + 1) * 3 + (z + 1) : -1; // 36-44
+            case R:
+                return x == 1 ? 9 + (y + 1) * 3 + (1 - z) : -1; // 9-17
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.colorcube.ui;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+
+import com.colorcube.model.CubeModel;
+
+/**
+ * Draws {@link ViewSnapshot}s of the cube, either with Java2D (painter's
+ * algorithm) or with the {@link SoftwareRasterizer}, depending on the
+ * snapshot.
+ *
+ * A renderer keeps per-frame buffers and must only be used by one thread at
+ * a time; the passive view and the render thread each have their own.
+ */
+final class CubeRenderer {
+    // Sticker colours by CubeModel.colorIndex, and their lighter shine
+    private static final Color[] PALETTE = {
+            Color.WHITE, Color.RED, Color.GREEN, Color.YELLOW,
+            new Color(255, 100, 0), // Orange (Darker)
+            new Color(30, 144, 255), Color.GRAY };
+    // Palette slot for a colour CubeModel does not know
+    private static final int UNKNOWN_COLOR = 6;
+    private static final Color[] SHINE = new Color[PALETTE.length];
+
+    static {
+        for (int i = 0; i < PALETTE.length; i++)
+            SHINE[i] = PALETTE[i].brighter();
+    }
+
+    // Per-frame buffers, reused so that painting allocates almost nothing
+    private final double[] screen = new double[CubeGeometry.QUAD_COUNT * CubeGeometry.VERTS_PER_QUAD * 2];
+    private final double[] vertexDepth = new double[CubeGeometry.QUAD_COUNT * CubeGeometry.VERTS_PER_QUAD];
+    private final DepthSort order = new DepthSort(CubeGeometry.QUAD_COUNT);
+    // Cube space to screen offset and depth for this frame, without and
+    // with the turn of the animating layer
+    private final double[] view = new double[9];
+    private final double[] turnMatrix = new double[9];
+    private final double[] turnedView = new double[9];
+    private final GeneralPath path = new GeneralPath();
+
+    private BufferedImage java2dFrame;
+    private SoftwareRasterizer rasterizer;
+
+    // Snapshot being drawn
+    private ViewSnapshot current;
+
+    /**
+     * Renders the snapshot for a w x h area into an image of iw x ih device
+     * pixels. The image is reused by later frames of the same size.
+     *
+     * @param gc used to create an image Java2D can accelerate; may be null
+     */
+    BufferedImage renderImage(ViewSnapshot snapshot, int iw, int ih, int w, int h, Color background,
+            GraphicsConfiguration gc) {
+        current = snapshot;
+        if (snapshot.software)
+            return rasterize(iw, ih, w, h, background);
+
+        if (java2dFrame == null || java2dFrame.getWidth() != iw || java2dFrame.getHeight() != ih) {
+            java2dFrame = gc != null ? gc.createCompatibleImage(iw, ih)
+                    : new BufferedImage(iw, ih, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g2 = java2dFrame.createGraphics();
+        try {
+            g2.scale((double) iw / w, (double) ih / h);
+            g2.setColor(background);
+            g2.fillRect(0, 0, w, h);
+            render(g2, w, h);
+        } finally {
+            g2.dispose();
+        }
+        return java2dFrame;
+    }
+
+    /**
+     * Paints the snapshot straight onto g2, which covers a w x h area.
+     */
+    void paint(Graphics2D g2, ViewSnapshot snapshot, int w, int h, Color background) {
+        if (snapshot.software) {
+            // Device resolution, so that scaled (HiDPI) screens stay sharp
+            AffineTransform tx = g2.getTransform();
+            int iw = (int) Math.ceil(w * tx.getScaleX());
+            int ih = (int) Math.ceil(h * tx.getScaleY());
+            g2.drawImage(renderImage(snapshot, iw, ih, w, h, background, null), 0, 0, w, h, null);
+            return;
+        }
+        current = snapshot;
+        g2.setColor(background);
+        g2.fillRect(0, 0, w, h);
+        render(g2, w, h);
+    }
+
+    /**
+     * Quads drawn in the last frame.
+     */
+    int getQuadCount() {
+        return order.size();
+    }
+
+    // Same quads as render(), but the z-buffer takes the place of the sort
+    private BufferedImage rasterize(int iw, int ih, int w, int h, Color background) {
+        if (rasterizer == null)
+            rasterizer = new SoftwareRasterizer(CubeGeometry.QUAD_COUNT);
+        transformQuads();
+        rasterizer.begin(iw, ih, background.getRGB(), w / 2.0, h / 2.0, (double) iw / w, (double) ih / h);
+        for (int i = 0; i < order.size(); i++) {
+            int q = order.get(i);
+            int facelet = CubeGeometry.FACELET[q];
+            int shine = Color.BLACK.getRGB(), base = shine; // Inside of the cube
+            if (facelet >= 0) {
+                int c = colorIndex(current.getFacelet(facelet));
+                shine = SHINE[c].getRGB();
+                base = PALETTE[c].getRGB();
+            }
+            int v = q * CubeGeometry.VERTS_PER_QUAD;
+            rasterizer.addQuad(screen, v * 2, vertexDepth, v, shine, base);
+        }
+        return rasterizer.render();
+    }
+
+    private void render(Graphics2D g2, int w, int h) {
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // Center of screen
+        double cx = w / 2.0;
+        double cy = h / 2.0;
+
+        transformQuads();
+
+        // Sort by Z (Painter's algorithm)
+        order.sort();
+
+        // Draw
+        for (int i = 0; i < order.size(); i++) {
+            drawQuad(g2, order.get(i), cx, cy);
+        }
+    }
+
+    // Projects the vertices of every quad that can be seen once into the
+    // screen buffer, keeps the ones facing the viewer and averages their depth
+    private void transformQuads() {
+        int turning = current.move != null ? current.move.getFace().ordinal() : -1;
+        int animBit = turning >= 0 ? 1 << turning : 0;
+        updateMatrices();
+        double[] verts = CubeGeometry.VERTICES;
+        order.clear();
+        for (int q = 0; q < CubeGeometry.QUAD_COUNT; q++) {
+            if (!CubeGeometry.isReachable(q, turning))
+                continue;
+            double[] m = (CubeGeometry.LAYERS[q] & animBit) != 0 ? turnedView : view;
+            double sum = 0;
+            for (int i = 0; i < CubeGeometry.VERTS_PER_QUAD; i++) {
+                int v = q * CubeGeometry.VERTS_PER_QUAD + i;
+                double x = verts[v * 3], y = verts[v * 3 + 1], z = verts[v * 3 + 2];
+                screen[v * 2] = m[0] * x + m[1] * y + m[2] * z;
+                screen[v * 2 + 1] = m[3] * x + m[4] * y + m[5] * z;
+                vertexDepth[v] = m[6] * x + m[7] * y + m[8] * z;
+                sum += vertexDepth[v];
+            }
+            if (facesViewer(q))
+                order.add(q, sum / 4.0);
+        }
+    }
+
+    // All trigonometry happens here, once per frame: the camera orientation
+    // with the zoom folded into the screen rows, and its product with the
+    // current layer turn
+    private void updateMatrices() {
+        current.copyCameraTo(view);
+        for (int i = 0; i < 6; i++)
+            view[i] *= current.scale;
+        if (current.move != null) {
+            Camera.rotation(turnAxis(), turnAngle(), turnMatrix);
+            Camera.multiply(view, turnMatrix, turnedView);
+        }
+    }
+
+    // The viewer looks along +z. The cross product of the projected
+    // diagonals is a positive multiple of the rotated normal's z, which
+    // must point back towards the viewer
+    private boolean facesViewer(int q) {
+        int o = q * CubeGeometry.VERTS_PER_QUAD * 2;
+        double ax = screen[o + 4] - screen[o], ay = screen[o + 5] - screen[o + 1];
+        double bx = screen[o + 6] - screen[o + 2], by = screen[o + 7] - screen[o + 3];
+        return ax * by - ay * bx < 0;
+    }
+
+    private int turnAxis() {
+        switch (current.move.getFace()) {
+            case U:
+            case D:
+                return Camera.Y_AXIS;
+            case R:
+            case L:
+                return Camera.X_AXIS;
+            default:
+                return Camera.Z_AXIS;
+        }
+    }
+
+    // Angle of the turning layer in degrees, signed so that a clockwise
+    // turn looks clockwise from its own face
+    private double turnAngle() {
+        double angle = 90.0 * current.progress * current.move.getDir();
+        if (current.undo)
+            angle = -angle;
+        switch (current.move.getFace()) {
+            case U:
+            case L:
+            case B:
+                return -angle;
+            default:
+                return angle;
+        }
+    }
+
+    private static int colorIndex(char code) {
+        int c = CubeModel.colorIndex(code);
+        return c >= 0 ? c : UNKNOWN_COLOR;
+    }
+
+    private void drawQuad(Graphics2D g2, int q, double cx, double cy) {
+        int o = q * CubeGeometry.VERTS_PER_QUAD * 2;
+        path.reset();
+        path.moveTo(cx + screen[o], cy + screen[o + 1]);
+        for (int i = 1; i < 4; i++)
+            path.lineTo(cx + screen[o + 2 * i], cy + screen[o + 2 * i + 1]);
+        path.closePath();
+
+        int facelet = CubeGeometry.FACELET[q];
+        if (facelet >= 0) {
+            // Shine using GradientPaint from top-left (p0) to bottom-right (p2)
+            int c = colorIndex(current.getFacelet(facelet));
+            GradientPaint gp = new GradientPaint(
+                    (float) (cx + screen[o]), (float) (cy + screen[o + 1]), SHINE[c],
+                    (float) (cx + screen[o + 4]), (float) (cy + screen[o + 5]), PALETTE[c]);
+            g2.setPaint(gp);
+        } else {
+            // Inside of the cube
+            g2.setColor(Color.BLACK);
+        }
+
+        g2.fill(path);
+        g2.setColor(Color.BLACK);
+        g2.draw(path);
+    }
+}
@@ -0,0 +1,58 @@
+package com.colorcube.ui;
+
+import java.util.Arrays;
+
+/**
+ * Back-to-front order of the quads of one frame, for the painter's
+ * algorithm.
+ *
+ * Each quad's depth is computed once, when it is added, and packed with the
+ * quad index into a single long whose natural order is farthest first. The
+ * sort then compares primitives only: no boxing, no comparator and no
+ * re-projection.
+ */
+final class DepthSort {
+    private final long[] keys;
+    private int count;
+
+    DepthSort(int capacity) {
+        keys = new long[capacity];
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds quad q (non-negative) at the given depth; larger is farther.
+     */
+    void add(int q, double depth) {
+        keys[count++] = (long) sortableBits(-(float) depth) << 32 | q;
+    }
+
+    /**
+     * Sorts farthest first. Quads at equal depth keep their index order.
+     */
+    void sort() {
+        Arrays.sort(keys, 0, count);
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * The i-th quad to draw, after {@link #sort()}.
+     */
+    int get(int i) {
+        return (int) keys[i];
+    }
+
+    // Maps a float to an int with the same ordering: positive floats already
+    // compare correctly as ints, negative ones need their magnitude bits
+    // flipped. Adding 0 turns -0 into +0 first
+    private static int sortableBits(float f) {
+        int bits = Float.floatToIntBits(f + 0.0f);
+        return bits ^ (bits >> 31 & 0x7fffffff);
+    }
+}
@@ -5,9 +5,13 @@ import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
@@ -25,21 +29,29 @@ import javax.swing.JSplitPane;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.ImageIcon;
 import java.awt.Color;
 import java.awt.event.ActionListener;
 import java.awt.Font;
 import java.awt.Image;
 
-import com.colorcube.core.Scrambler;
+import com.colorcube.core.ScramblePool;
+import com.colorcube.core.TwoPhaseSolver;
 import com.colorcube.model.CubeModel;
+import com.colorcube.model.CubieCube;
 import com.colorcube.model.Face;
 import com.colorcube.model.Move;
 import com.colorcube.persistence.DBManager;
 
 public class MainFrame extends JFrame {
+    private static final String STATS_FILE = "render_stats.csv";
+    // The Solve button can afford a longer search for a shorter solution
+    private static final long SOLVE_TIMEOUT_MILLIS = 1000;
+
     private CubeModel model;
     private Cube3DPanel panel3D;
+    private MoveQueue moveQueue;
     private CubeNetPanel panelNet;
     private DBManager dbManager;
 
@@ -51,6 +63,12 @@ public class MainFrame extends JFrame {
 
     private Map<Face, Character> faceKeys;
 
+    // Only used from one SwingWorker at a time
+    private final TwoPhaseSolver solver = new TwoPhaseSolver();
+    private JButton btnSolve;
+
+    private final ScramblePool scramblePool = new ScramblePool();
+
     public MainFrame() {
         super("Virtual Color Cube");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -73,6 +91,9 @@ public class MainFrame extends JFrame {
 
         initUI();
         refreshSavedList();
+
+        // Also builds the solver tables in the background
+        scramblePool.start();
     }
 
     private void initUI() {
@@ -81,6 +102,7 @@ public class MainFrame extends JFrame {
         // Inner SplitPane (3D + Net)
         panel3D = new Cube3DPanel(model);
         panelNet = new CubeNetPanel(model, faceKeys, this::updateKeyBinding);
+        moveQueue = new MoveQueue(model, panel3D, this::refreshViews);
 
         innerSplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, panel3D, panelNet);
         innerSplitPane.setResizeWeight(0.6); // 60/40 default when saved pane is hidden
@@ -120,7 +142,7 @@ public class MainFrame extends JFrame {
         toolbar.addSeparator(new Dimension(10, 0));
 
         JButton btnReset = createStyledButton("Reset", e -> {
-            if (panel3D.isAnimating())
+            if (moveQueue.isBusy())
                 return;
             model.reset();
             refreshViews();
@@ -129,6 +151,11 @@ public class MainFrame extends JFrame {
 
         toolbar.addSeparator(new Dimension(10, 0));
 
+        btnSolve = createStyledButton("Solve", e -> doSolve());
+        toolbar.add(btnSolve);
+
+        toolbar.addSeparator(new Dimension(10, 0));
+
         JButton btnSave = createStyledButton("Save Progress", e -> doSave());
         toolbar.add(btnSave);
 
@@ -175,10 +202,16 @@ public class MainFrame extends JFrame {
                 "- Rotate Cube: Click and drag on the 3D cube.\n" +
                 "- Zoom: Mouse wheel.\n" +
                 "- Scramble: Click 'New Scramble'.\n" +
-                "- Reset: Click 'Reset'.\n\n" +
+                "- Reset: Click 'Reset'.\n" +
+                "- Solve: Click 'Solve' to watch a solution being played.\n\n" +
                 "Keyboard Shortcuts:\n" +
                 "- R, L, U, D, F, B: Clockwise rotations.\n" +
-                "- Ctrl + Z: Undo (Performs Anti-Clockwise Rotation).\n\n" +
+                "- Ctrl + Z: Undo (Performs Anti-Clockwise Rotation).\n" +
+                "- Ctrl + Y: Redo the last undone move.\n" +
+                "- F9: Switch the 3D view between the Java2D and software renderer.\n" +
+                "- F10: Draw the 3D view on its own render thread.\n" +
+                "- F11: Show frame and input latency statistics on the 3D view.\n" +
+                "- F12: Save those statistics to render_stats.csv.\n\n" +
                 "Custom Keys:\n" +
                 "- Click the center of any face in the 2D view to assign a custom key.\n\n" +
                 "Sessions:\n" +
@@ -214,18 +247,54 @@ public class MainFrame extends JFrame {
     }
 
     private void doScramble() {
-        if (panel3D.isAnimating())
+        if (moveQueue.isBusy())
             return;
-        List<Move> scramble = Scrambler.generateScramble(20);
-        // Animate scramble? Too slow. Just apply.
-        for (Move m : scramble) {
-            model.applyMove(m);
-        }
+        // Random-state scramble from the pool; never waits for the solver
+        List<Move> scramble = scramblePool.take();
+        // Animate scramble? Too slow. Apply it as one composed permutation.
+        model.applySequence(scramble, true);
         refreshViews();
     }
 
+    private void doSolve() {
+        if (moveQueue.isBusy() || !btnSolve.isEnabled())
+            return;
+        String facelets = model.getFaceletString();
+        long stateAtStart = model.stateHash();
+        btnSolve.setEnabled(false);
+        // The first solve builds the solver tables, so keep it off the EDT
+        new SwingWorker<List<Move>, Void>() {
+            @Override
+            protected List<Move> doInBackground() {
+                return solver.solveShortest(CubieCube.fromFacelets(facelets), SOLVE_TIMEOUT_MILLIS);
+            }
+
+            @Override
+            protected void done() {
+                btnSolve.setEnabled(true);
+                List<Move> solution;
+                try {
+                    solution = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(MainFrame.this, "Cannot solve this cube: " + cause.getMessage(),
+                            "Solve", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // The user kept turning while we searched; the solution no longer applies
+                if (model.stateHash() != stateAtStart || moveQueue.isBusy())
+                    return;
+                if (solution.isEmpty()) {
+                    JOptionPane.showMessageDialog(MainFrame.this, "The cube is already solved.");
+                    return;
+                }
+                moveQueue.play(solution);
+            }
+        }.execute();
+    }
+
     private void doSave() {
-        if (panel3D.isAnimating())
+        if (moveQueue.isBusy())
             return;
         String name = JOptionPane.showInputDialog(this, "Enter name for this session:");
         if (name != null && !name.trim().isEmpty()) {
@@ -236,9 +305,17 @@ public class MainFrame extends JFrame {
     }
 
     private void doLoad(DBManager.SavedSession session) {
-        if (panel3D.isAnimating())
+        if (moveQueue.isBusy())
             return;
         if (session != null) {
+            if (session.formatVersion < DBManager.FORMAT_VERSION && !CubieCube.isSolvable(session.faceletString)) {
+                JOptionPane.showMessageDialog(this,
+                        "Session '" + session.name + "' was saved by an older version whose F and B turns "
+                                + "moved some stickers to the wrong places.\nIt is not a state a real cube can "
+                                + "reach, so it cannot be loaded.",
+                        "Load", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
             model.setFacelets(session.faceletString);
             // In a real app we would restore move history too
             refreshViews();
@@ -246,7 +323,7 @@ public class MainFrame extends JFrame {
     }
 
     private void doDelete(DBManager.SavedSession session) {
-        if (panel3D.isAnimating())
+        if (moveQueue.isBusy())
             return;
         if (session != null) {
             int confirm = JOptionPane.showConfirmDialog(this,
@@ -332,20 +409,74 @@ public class MainFrame extends JFrame {
         content.getActionMap().put("undo", new AbstractAction() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (panel3D.isAnimating())
-                    return;
+                moveQueue.undo(MoveQueue.inputNanos(e.getWhen()));
+            }
+        });
 
-                Move lastMove = model.getLastMove();
-                if (lastMove != null) {
-                    panel3D.animateUndo(lastMove, () -> {
-                        model.undo();
-                        refreshViews();
-                    });
-                }
+        // Redo
+        content.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, KeyEvent.CTRL_DOWN_MASK), "redo");
+        content.getActionMap().put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                moveQueue.redo(MoveQueue.inputNanos(e.getWhen()));
+            }
+        });
+
+        // Switch 3D renderer
+        content.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_F9, 0), "toggleRenderer");
+        content.getActionMap().put("toggleRenderer", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                panel3D.setSoftwareRendering(!panel3D.isSoftwareRendering());
+            }
+        });
+
+        // Switch between Swing painting and active rendering
+        content.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_F10, 0), "toggleActiveRendering");
+        content.getActionMap().put("toggleActiveRendering", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                panel3D.setActiveRendering(!panel3D.isActiveRendering());
+            }
+        });
+
+        // Frame and latency statistics
+        content.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_F11, 0), "toggleStats");
+        content.getActionMap().put("toggleStats", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                panel3D.setStatsOverlay(!panel3D.isStatsOverlay());
+            }
+        });
+        content.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_F12, 0), "saveStats");
+        content.getActionMap().put("saveStats", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                saveStats();
             }
         });
     }
 
+    private void saveStats() {
+        if (!panel3D.isStatsOverlay()) {
+            JOptionPane.showMessageDialog(this, "Press F11 to start collecting statistics first.");
+            return;
+        }
+        Path file = Paths.get(STATS_FILE);
+        try {
+            panel3D.writeStats(file);
+            JOptionPane.showMessageDialog(this, "Statistics saved to " + file.toAbsolutePath());
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Could not save statistics: " + ex.getMessage(), "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void bindFaceKey(JComponent c, Face face, char key) {
         int keyCode = KeyEvent.getExtendedKeyCodeForChar(key);
         // If extended key code fails (returns 0), try uppercase char cast
@@ -359,12 +490,7 @@ public class MainFrame extends JFrame {
         c.getActionMap().put(name, new AbstractAction() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (panel3D.isAnimating())
-                    return;
-                panel3D.animateMove(move, () -> {
-                    model.applyMove(move);
-                    refreshViews();
-                });
+                moveQueue.turn(move, MoveQueue.inputNanos(e.getWhen()));
             }
         });
     }
@@ -0,0 +1,198 @@
+package com.colorcube.ui;
+
+import java.awt.EventQueue;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.colorcube.model.CubeModel;
+import com.colorcube.model.Move;
+
+/**
+ * Moves waiting to be shown on the 3D view, so that keys pressed while a
+ * turn is animating are not lost.
+ *
+ * Every queued turn, undo and redo reaches the model in the order it was
+ * entered; undo and redo act on the model as it is by the time their turn
+ * comes. When input arrives faster than the turns can be shown, the
+ * animations share what is left of {@link #MAX_LAG} since the latest key
+ * press, and once that leaves less than {@link #MIN_DURATION} each, the
+ * oldest are applied without animation, so the view never falls further
+ * behind the keyboard than that. Solution playback on its own runs at normal speed; keys
+ * pressed during it make the rest of it catch up as well, since the moves
+ * must stay in order. Only used on the EDT.
+ */
+class MoveQueue {
+    // Longest time from a key press until its move has been shown, in ms
+    static final int MAX_LAG = 400;
+    // Shortest animation worth showing, in ms
+    static final int MIN_DURATION = 40;
+
+    private enum Kind {
+        TURN, UNDO, REDO
+    }
+
+    private static final class Entry {
+        final Kind kind;
+        final Move move;
+        final boolean paced;
+        final long inputNanos;
+
+        Entry(Kind kind, Move move, boolean paced, long inputNanos) {
+            this.kind = kind;
+            this.move = move;
+            this.paced = paced;
+            this.inputNanos = inputNanos;
+        }
+    }
+
+    private final CubeModel model;
+    private final Cube3DPanel panel;
+    private final Runnable onApplied;
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private boolean running;
+    private long lastInputNanos;
+    private long skipped;
+
+    /**
+     * @param onApplied called after each change to the model, e.g. to
+     *                  refresh the views
+     */
+    MoveQueue(CubeModel model, Cube3DPanel panel, Runnable onApplied) {
+        this.model = model;
+        this.panel = panel;
+        this.onApplied = onApplied;
+    }
+
+    /**
+     * Converts the timestamp of an input event ({@code getWhen()}, wall
+     * clock milliseconds) to the {@link System#nanoTime()} base the queue
+     * measures lag and latency in, so that time the event spent waiting on
+     * the EDT counts as well.
+     */
+    static long inputNanos(long whenMillis) {
+        long now = System.nanoTime();
+        if (whenMillis <= 0)
+            whenMillis = EventQueue.getMostRecentEventTime();
+        long age = System.currentTimeMillis() - whenMillis;
+        return age > 0 ? now - TimeUnit.MILLISECONDS.toNanos(age) : now;
+    }
+
+    /**
+     * @param inputNanos when the key was pressed, see {@link #inputNanos}
+     */
+    void turn(Move move, long inputNanos) {
+        add(new Entry(Kind.TURN, move, false, inputNanos));
+    }
+
+    void undo(long inputNanos) {
+        add(new Entry(Kind.UNDO, null, false, inputNanos));
+    }
+
+    void redo(long inputNanos) {
+        add(new Entry(Kind.REDO, null, false, inputNanos));
+    }
+
+    /**
+     * Queues a solution to be played at the normal animation speed.
+     */
+    void play(List<Move> moves) {
+        for (Move move : moves)
+            pending.addLast(new Entry(Kind.TURN, move, true, System.nanoTime()));
+        next();
+    }
+
+    /**
+     * Whether a move is animating or waiting to.
+     */
+    boolean isBusy() {
+        return running || !pending.isEmpty();
+    }
+
+    /**
+     * Queued moves that were applied without an animation to keep up.
+     */
+    long getSkippedCount() {
+        return skipped;
+    }
+
+    private void add(Entry entry) {
+        lastInputNanos = entry.inputNanos;
+        pending.addLast(entry);
+        next();
+    }
+
+    private void next() {
+        if (running || panel.isAnimating())
+            return;
+
+        // Too much input to animate within the lag bound: catch up at once
+        long left = MAX_LAG - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastInputNanos);
+        boolean caught = false;
+        while (backlog() > 0 && left / backlog() < MIN_DURATION) {
+            apply(pending.removeFirst());
+            skipped++;
+            caught = true;
+        }
+        if (caught)
+            onApplied.run();
+
+        int backlog = backlog();
+        Entry entry = pending.pollFirst();
+        if (entry == null)
+            return;
+        int duration = backlog == 0 ? Cube3DPanel.ANIM_DURATION
+                : (int) Math.min(Cube3DPanel.ANIM_DURATION, left / backlog);
+        Runnable done = () -> {
+            running = false;
+            apply(entry);
+            onApplied.run();
+            next();
+        };
+
+        Move move = entry.move;
+        if (entry.kind == Kind.UNDO)
+            move = model.getLastMove();
+        else if (entry.kind == Kind.REDO)
+            move = model.getNextMove();
+        if (move == null) {
+            // Nothing to undo or redo
+            next();
+            return;
+        }
+        running = true;
+        if (entry.kind == Kind.UNDO)
+            panel.animateUndo(move, duration, done);
+        else
+            panel.animateMove(move, duration, done);
+    }
+
+    // Entries that have to be shown before the latest key input has been,
+    // counting the next one to start; 0 while only playback is waiting
+    private int backlog() {
+        int n = 0, i = 0;
+        for (Entry e : pending) {
+            i++;
+            if (!e.paced)
+                n = i;
+        }
+        return n;
+    }
+
+    private void apply(Entry entry) {
+        switch (entry.kind) {
+            case TURN:
+                model.applyMove(entry.move);
+                break;
+            case UNDO:
+                model.undo();
+                break;
+            case REDO:
+                model.redo();
+                break;
+        }
+        RenderStats stats = panel.getStats();
+        if (stats != null && !entry.paced)
+            stats.inputApplied(entry.inputNanos);
+    }
+}
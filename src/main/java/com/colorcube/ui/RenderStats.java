@@ -0,0 +1,159 @@
+package com.colorcube.ui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+import com.colorcube.core.LatencyHistogram;
+
+/**
+ * Frame and input latency statistics for the 3D view, with an overlay that
+ * shows them and a CSV dump.
+ *
+ * Only exists while instrumentation is on; with it off the view holds no
+ * instance and skips every measurement. Frames may be recorded from the
+ * render thread, everything else happens on the EDT.
+ */
+final class RenderStats {
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private static final Color BACKDROP = new Color(0, 0, 0, 160);
+
+    // Bytes allocated by a thread so far, where the JVM can tell
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private final LatencyHistogram frameNanos = new LatencyHistogram();
+    private final LatencyHistogram quads = new LatencyHistogram();
+    private final LatencyHistogram frameBytes = new LatencyHistogram();
+    private final LatencyHistogram keyToModel = new LatencyHistogram();
+    private final LatencyHistogram keyToPixel = new LatencyHistogram();
+    private final long startNanos = System.nanoTime();
+
+    // Key presses that reached the model but not yet the screen, as
+    // {sequence, press time}. Guarded by itself
+    private final ArrayDeque<long[]> unseen = new ArrayDeque<>();
+    private long applied; // EDT only
+
+    /**
+     * Returns the allocation counter of the current thread, to pass to
+     * {@link #frameDrawn} once the frame is done; 0 if not supported.
+     */
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Records a frame drawn by the current thread.
+     *
+     * @param startNanos  when drawing started
+     * @param startBytes  {@link #allocatedBytes()} when drawing started
+     * @param quadCount   quads drawn, or -1 if the frame was a cached image
+     * @param inputsShown {@link #getAppliedCount()} as of the snapshot drawn
+     */
+    void frameDrawn(long startNanos, long startBytes, int quadCount, long inputsShown) {
+        long now = System.nanoTime();
+        frameNanos.record(now - startNanos);
+        if (THREADS != null)
+            frameBytes.record(Math.max(0, allocatedBytes() - startBytes));
+        if (quadCount >= 0)
+            quads.record(quadCount);
+        synchronized (unseen) {
+            while (!unseen.isEmpty() && unseen.peekFirst()[0] <= inputsShown)
+                keyToPixel.record(now - unseen.removeFirst()[1]);
+        }
+    }
+
+    /**
+     * Records that the move of a key pressed at {@code inputNanos} has just
+     * been applied to the model.
+     */
+    void inputApplied(long inputNanos) {
+        keyToModel.record(System.nanoTime() - inputNanos);
+        applied++;
+        synchronized (unseen) {
+            unseen.addLast(new long[] { applied, inputNanos });
+        }
+    }
+
+    /**
+     * Key presses applied to the model so far. A frame of a snapshot taken
+     * now shows all of them.
+     */
+    long getAppliedCount() {
+        return applied;
+    }
+
+    void paintOverlay(Graphics2D g2) {
+        String[] lines = {
+                "frame      " + millis(frameNanos),
+                String.format(Locale.ROOT, "quads      mean %.1f  max %d", quads.getMean(), quads.getMax()),
+                String.format(Locale.ROOT, "alloc      p50 %.1f KB/frame  %.2f MB/s",
+                        frameBytes.getPercentile(50) / 1024.0, allocationRate() / (1024.0 * 1024.0)),
+                "key>model  " + millis(keyToModel),
+                "key>pixel  " + millis(keyToPixel) };
+        g2.setFont(FONT);
+        FontMetrics fm = g2.getFontMetrics();
+        int width = 0;
+        for (String line : lines)
+            width = Math.max(width, fm.stringWidth(line));
+        int lineHeight = fm.getHeight();
+        g2.setColor(BACKDROP);
+        g2.fillRect(4, 4, width + 12, lines.length * lineHeight + 8);
+        g2.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++)
+            g2.drawString(lines[i], 10, 8 + i * lineHeight + fm.getAscent());
+    }
+
+    /**
+     * Writes every histogram as one CSV row. Times are in nanoseconds.
+     */
+    void writeCsv(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("metric,unit,count,mean,p50,p90,p99,p99.9,max");
+            out.newLine();
+            writeRow(out, "frame_time", "ns", frameNanos);
+            writeRow(out, "quads_drawn", "quads", quads);
+            writeRow(out, "frame_alloc", "bytes", frameBytes);
+            writeRow(out, "key_to_model", "ns", keyToModel);
+            writeRow(out, "key_to_pixel", "ns", keyToPixel);
+        }
+    }
+
+    // Bytes per second allocated while drawing frames
+    private double allocationRate() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : frameBytes.getMean() * frameBytes.getCount() / seconds;
+    }
+
+    private static String millis(LatencyHistogram h) {
+        return String.format(Locale.ROOT, "p50 %.2f  p99 %.2f  max %.2f ms", h.getPercentile(50) / 1e6,
+                h.getPercentile(99) / 1e6, h.getMax() / 1e6);
+    }
+
+    private static void writeRow(BufferedWriter out, String metric, String unit, LatencyHistogram h)
+            throws IOException {
+        out.write(String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%d,%d,%d,%d", metric, unit, h.getCount(),
+                h.getMean(), h.getPercentile(50), h.getPercentile(90), h.getPercentile(99),
+                h.getPercentile(99.9), h.getMax()));
+        out.newLine();
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (!threads.isThreadAllocatedMemorySupported())
+            return null;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
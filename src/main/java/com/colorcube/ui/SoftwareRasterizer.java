@@ -0,0 +1,263 @@
+package com.colorcube.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Z-buffered software renderer for the cube's quads, an alternative to
+ * painting them back to front with Java2D.
+ *
+ * Quads are drawn straight into the int pixels of a BufferedImage. Each
+ * pixel keeps the nearest quad, so quads that intersect in the middle of a
+ * turn are resolved per pixel rather than per quad, and no sort is needed.
+ * The image is split into tiles that are filled in parallel on a fork/join
+ * pool.
+ *
+ * Under the orthographic view every quad projects to a parallelogram, so
+ * its local (u, v) coordinates, depth and gradient position are all affine
+ * in the pixel position and are stepped incrementally along each row. Edges
+ * are not antialiased.
+ */
+final class SoftwareRasterizer {
+    private static final int TILE = 64;
+    // Tiles per leaf task
+    private static final int MIN_SPLIT = 4;
+
+    // Per quad: u, v, depth and gradient position as c + cx * x + cy * y,
+    // then the pixel distance per unit u and v
+    private static final int U = 0, V = 3, Z = 6, T = 9, HU = 12, HV = 13;
+    private static final int COEFS = 14;
+    // Gradient steps per quad; the position T runs from 0 to RAMP - 1
+    private static final int RAMP = 256;
+
+    private final ForkJoinPool pool;
+    private final double[] coef;
+    private final int[] bounds; // minX, minY, maxX, maxY, inclusive
+    private final int[] ramp;
+    private int count;
+
+    private BufferedImage image;
+    private int[] pixels;
+    private float[] zbuffer;
+    private int width, height;
+    private int background;
+    private double originX, originY, scaleX, scaleY;
+    private double halfLine;
+
+    SoftwareRasterizer(int capacity) {
+        this(capacity, ForkJoinPool.commonPool());
+    }
+
+    SoftwareRasterizer(int capacity, ForkJoinPool pool) {
+        this.pool = pool;
+        coef = new double[capacity * COEFS];
+        bounds = new int[capacity * 4];
+        ramp = new int[capacity * RAMP];
+    }
+
+    /**
+     * Starts a frame of width x height device pixels. Quad coordinates are
+     * mapped to pixels as (origin + p) * scale.
+     */
+    void begin(int width, int height, int background, double originX, double originY, double scaleX,
+            double scaleY) {
+        if (image == null || this.width != width || this.height != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            zbuffer = new float[width * height];
+            this.width = width;
+            this.height = height;
+        }
+        this.background = background;
+        this.originX = originX;
+        this.originY = originY;
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        // Same outline as a 1 pixel Java2D stroke: half of it on each side
+        halfLine = 0.5 * Math.min(scaleX, scaleY);
+        count = 0;
+    }
+
+    /**
+     * Adds a quad whose 4 corners are at xy[o..o+7] with depths
+     * z[d..d+3] (larger is farther). It is filled with a gradient from
+     * shineRgb at corner 0 to baseRgb at corner 2 and outlined in black.
+     */
+    void addQuad(double[] xy, int o, double[] z, int d, int shineRgb, int baseRgb) {
+        double x0 = (originX + xy[o]) * scaleX, y0 = (originY + xy[o + 1]) * scaleY;
+        double x1 = (originX + xy[o + 2]) * scaleX, y1 = (originY + xy[o + 3]) * scaleY;
+        double x2 = (originX + xy[o + 4]) * scaleX, y2 = (originY + xy[o + 5]) * scaleY;
+        double x3 = (originX + xy[o + 6]) * scaleX, y3 = (originY + xy[o + 7]) * scaleY;
+
+        // P = p0 + u * e1 + v * e2
+        double e1x = x1 - x0, e1y = y1 - y0;
+        double e2x = x3 - x0, e2y = y3 - y0;
+        double det = e1x * e2y - e1y * e2x;
+        if (Math.abs(det) < 1e-9)
+            return; // Seen edge-on
+        int minX = Math.max(0, (int) Math.floor(Math.min(Math.min(x0, x1), Math.min(x2, x3))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(Math.min(y0, y1), Math.min(y2, y3))));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(Math.max(x0, x1), Math.max(x2, x3))));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(Math.max(y0, y1), Math.max(y2, y3))));
+        if (minX > maxX || minY > maxY)
+            return;
+
+        int q = count++;
+        int c = q * COEFS;
+        setAffine(c + U, x0, y0, e2y / det, -e2x / det);
+        setAffine(c + V, x0, y0, -e1y / det, e1x / det);
+        double dz1 = z[d + 1] - z[d], dz3 = z[d + 3] - z[d];
+        double zx = dz1 * coef[c + U + 1] + dz3 * coef[c + V + 1];
+        double zy = dz1 * coef[c + U + 2] + dz3 * coef[c + V + 2];
+        coef[c + Z] = z[d] - zx * x0 - zy * y0;
+        coef[c + Z + 1] = zx;
+        coef[c + Z + 2] = zy;
+        double gx = x2 - x0, gy = y2 - y0;
+        double g2 = gx * gx + gy * gy;
+        setAffine(c + T, x0, y0, (RAMP - 1) * gx / g2, (RAMP - 1) * gy / g2);
+        coef[c + HU] = Math.abs(det) / Math.hypot(e2x, e2y);
+        coef[c + HV] = Math.abs(det) / Math.hypot(e1x, e1y);
+
+        bounds[q * 4] = minX;
+        bounds[q * 4 + 1] = minY;
+        bounds[q * 4 + 2] = maxX;
+        bounds[q * 4 + 3] = maxY;
+        fillRamp(q * RAMP, shineRgb, baseRgb);
+    }
+
+    private void fillRamp(int at, int from, int to) {
+        int r = from >> 16 & 0xff, g = from >> 8 & 0xff, b = from & 0xff;
+        int dr = (to >> 16 & 0xff) - r, dg = (to >> 8 & 0xff) - g, db = (to & 0xff) - b;
+        for (int i = 0; i < RAMP; i++) {
+            double f = (double) i / (RAMP - 1);
+            ramp[at + i] = (int) (r + dr * f) << 16 | (int) (g + dg * f) << 8 | (int) (b + db * f);
+        }
+    }
+
+    /**
+     * Renders the quads added since {@link #begin} and returns the image,
+     * which is reused by later frames of the same size.
+     */
+    BufferedImage render() {
+        int tilesX = (width + TILE - 1) / TILE;
+        int tilesY = (height + TILE - 1) / TILE;
+        pool.invoke(new TileTask(0, tilesX * tilesY, tilesX));
+        return image;
+    }
+
+    // Value that is 0 at (x0, y0) and changes by fx, fy per pixel
+    private void setAffine(int at, double x0, double y0, double fx, double fy) {
+        coef[at] = -(fx * x0 + fy * y0);
+        coef[at + 1] = fx;
+        coef[at + 2] = fy;
+    }
+
+    private final class TileTask extends RecursiveAction {
+        private final int from, to, tilesX;
+
+        TileTask(int from, int to, int tilesX) {
+            this.from = from;
+            this.to = to;
+            this.tilesX = tilesX;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_SPLIT) {
+                for (int t = from; t < to; t++)
+                    renderTile((t % tilesX) * TILE, (t / tilesX) * TILE);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new TileTask(from, mid, tilesX), new TileTask(mid, to, tilesX));
+        }
+    }
+
+    private void renderTile(int tx, int ty) {
+        int tx1 = Math.min(width, tx + TILE) - 1;
+        int ty1 = Math.min(height, ty + TILE) - 1;
+        boolean covered = false;
+        for (int q = 0; q < count && !covered; q++)
+            covered = overlaps(q, tx, ty, tx1, ty1);
+        for (int y = ty; y <= ty1; y++) {
+            int row = y * width;
+            Arrays.fill(pixels, row + tx, row + tx1 + 1, background);
+            // Depth is only read where some quad may be drawn
+            if (covered)
+                Arrays.fill(zbuffer, row + tx, row + tx1 + 1, Float.POSITIVE_INFINITY);
+        }
+        if (!covered)
+            return;
+        for (int q = 0; q < count; q++) {
+            if (!overlaps(q, tx, ty, tx1, ty1))
+                continue;
+            int b = q * 4;
+            int x0 = Math.max(tx, bounds[b]), x1 = Math.min(tx1, bounds[b + 2]);
+            int y0 = Math.max(ty, bounds[b + 1]), y1 = Math.min(ty1, bounds[b + 3]);
+            for (int y = y0; y <= y1; y++)
+                renderSpan(q, y, x0, x1);
+        }
+    }
+
+    private boolean overlaps(int q, int tx, int ty, int tx1, int ty1) {
+        int b = q * 4;
+        return bounds[b] <= tx1 && bounds[b + 2] >= tx && bounds[b + 1] <= ty1 && bounds[b + 3] >= ty;
+    }
+
+    // Fills the pixels of row y between x0 and x1 whose centres lie in quad q
+    private void renderSpan(int q, int y, int x0, int x1) {
+        int c = q * COEFS;
+        double py = y + 0.5;
+        double uRow = coef[c + U] + coef[c + U + 2] * py, ux = coef[c + U + 1];
+        double vRow = coef[c + V] + coef[c + V + 2] * py, vx = coef[c + V + 1];
+
+        // Narrow the span to where 0 <= u <= 1 and 0 <= v <= 1
+        double lo = x0 + 0.5, hi = x1 + 0.5;
+        if (ux != 0) {
+            double a = -uRow / ux, b = (1 - uRow) / ux;
+            lo = Math.max(lo, Math.min(a, b));
+            hi = Math.min(hi, Math.max(a, b));
+        } else if (uRow < 0 || uRow > 1) {
+            return;
+        }
+        if (vx != 0) {
+            double a = -vRow / vx, b = (1 - vRow) / vx;
+            lo = Math.max(lo, Math.min(a, b));
+            hi = Math.min(hi, Math.max(a, b));
+        } else if (vRow < 0 || vRow > 1) {
+            return;
+        }
+        int first = (int) Math.ceil(lo - 0.5);
+        int last = (int) Math.floor(hi - 0.5);
+        if (first > last)
+            return;
+
+        double px = first + 0.5;
+        double u = uRow + ux * px;
+        double v = vRow + vx * px;
+        double z = coef[c + Z] + coef[c + Z + 1] * px + coef[c + Z + 2] * py, zx = coef[c + Z + 1];
+        double t = coef[c + T] + coef[c + T + 1] * px + coef[c + T + 2] * py, tx = coef[c + T + 1];
+        double hu = coef[c + HU], hv = coef[c + HV];
+        int r = q * RAMP;
+
+        // Pixels closer than this to an edge, in units of u and v, are outline
+        double uEdge = halfLine / hu, vEdge = halfLine / hv;
+        int[] pixels = this.pixels;
+        float[] zbuffer = this.zbuffer;
+        int i = y * width + first;
+        for (int x = first; x <= last; x++, i++, u += ux, v += vx, z += zx, t += tx) {
+            if (z >= zbuffer[i])
+                continue;
+            zbuffer[i] = (float) z;
+            if (u < uEdge || u > 1 - uEdge || v < vEdge || v > 1 - vEdge) {
+                pixels[i] = 0; // Outline
+            } else {
+                int step = t < 0 ? 0 : t > RAMP - 1 ? RAMP - 1 : (int) t;
+                pixels[i] = ramp[r + step];
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.colorcube.ui;
+
+import com.colorcube.model.CubeModel;
+import com.colorcube.model.Move;
+
+/**
+ * Immutable copy of everything needed to draw one frame of the 3D view:
+ * the facelets, the camera, the zoom and the turn in progress. Taken on the
+ * EDT, it can then be rendered on any thread.
+ */
+final class ViewSnapshot {
+    private final char[] facelets = new char[54];
+    private final long stateHash;
+    private final double[] camera = new double[9];
+    private final long cameraVersion;
+    final double scale;
+    final Move move; // Turn in progress, or null
+    final boolean undo;
+    final double progress; // 0.0 to 1.0
+    final boolean software;
+    final long inputsApplied; // See RenderStats.getAppliedCount(); 0 when not measured
+
+    ViewSnapshot(CubeModel model, Camera camera, double scale, Move move, boolean undo, double progress,
+            boolean software, long inputsApplied) {
+        for (int i = 0; i < facelets.length; i++)
+            facelets[i] = model.getFacelet(i);
+        this.stateHash = model.stateHash();
+        camera.copyTo(this.camera);
+        this.cameraVersion = camera.getVersion();
+        this.scale = scale;
+        this.move = move;
+        this.undo = undo;
+        this.progress = progress;
+        this.software = software;
+        this.inputsApplied = inputsApplied;
+    }
+
+    char getFacelet(int index) {
+        return facelets[index];
+    }
+
+    void copyCameraTo(double[] out) {
+        System.arraycopy(camera, 0, out, 0, 9);
+    }
+
+    /**
+     * Whether a snapshot taken now with these arguments would render to the
+     * same frame. Compares in place, so a repaint that changes nothing does
+     * not need a new snapshot.
+     */
+    boolean shows(CubeModel model, Camera camera, double scale, Move move, boolean undo, double progress,
+            boolean software) {
+        return stateHash == model.stateHash() && cameraVersion == camera.getVersion()
+                && this.scale == scale && this.move == move && this.undo == undo
+                && this.progress == progress && this.software == software;
+    }
+}
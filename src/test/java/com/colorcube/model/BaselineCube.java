@@ -0,0 +1,164 @@
+package com.colorcube.model;
+
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * The facelet rotation code of the original {@code CubeModel}, kept
+ * verbatim as a reference: {@code applyMove} always turns clockwise and
+ * {@code undo} turns the last face back, one array copy per step.
+ */
+final class BaselineCube {
+    private char[] facelets;
+    private final Stack<Move> moveHistory = new Stack<>();
+
+    BaselineCube(char[] facelets) {
+        this.facelets = facelets.clone();
+    }
+
+    char[] facelets() {
+        return facelets.clone();
+    }
+
+    void applyMove(Move move) {
+        performRotation(move);
+        moveHistory.push(move);
+    }
+
+    void undo() {
+        if (!moveHistory.isEmpty()) {
+            Move move = moveHistory.pop();
+            rotateFaceCounterClockwise(move.getFace());
+        }
+    }
+
+    void rotateClockwise(Face face) {
+        rotateFaceClockwise(face);
+    }
+
+    void rotateCounterClockwise(Face face) {
+        rotateFaceCounterClockwise(face);
+    }
+
+    // Core rotation logic
+    private void performRotation(Move move) {
+        // Always 1 clockwise turn
+        rotateFaceClockwise(move.getFace());
+    }
+
+    private void rotateFaceCounterClockwise(Face face) {
+        rotateFaceSurfaceCCW(face);
+        rotateAdjacentLayersCCW(face);
+    }
+
+    private void rotateFaceSurfaceCCW(Face face) {
+        int offset = face.ordinal() * 9;
+        char[] temp = Arrays.copyOfRange(facelets, offset, offset + 9);
+        // CCW mapping:
+        // 0 <- 2, 1 <- 5, 2 <- 8
+        // 3 <- 1, 4 <- 4, 5 <- 7
+        // 6 <- 0, 7 <- 3, 8 <- 6
+        facelets[offset + 0] = temp[2];
+        facelets[offset + 1] = temp[5];
+        facelets[offset + 2] = temp[8];
+        facelets[offset + 3] = temp[1];
+        facelets[offset + 4] = temp[4];
+        facelets[offset + 5] = temp[7];
+        facelets[offset + 6] = temp[0];
+        facelets[offset + 7] = temp[3];
+        facelets[offset + 8] = temp[6];
+    }
+
+    private void rotateAdjacentLayersCCW(Face face) {
+        int[][] adj = getAdjacencyMap(face);
+        char[] temp = new char[3];
+
+        // Save adj[0]
+        for (int i = 0; i < 3; i++)
+            temp[i] = facelets[adj[0][i]];
+
+        // adj[0] = adj[3]
+        for (int i = 0; i < 3; i++)
+            facelets[adj[0][i]] = facelets[adj[3][i]];
+
+        // adj[3] = adj[2]
+        for (int i = 0; i < 3; i++)
+            facelets[adj[3][i]] = facelets[adj[2][i]];
+
+        // adj[2] = adj[1]
+        for (int i = 0; i < 3; i++)
+            facelets[adj[2][i]] = facelets[adj[1][i]];
+
+        // adj[1] = temp
+        for (int i = 0; i < 3; i++)
+            facelets[adj[1][i]] = temp[i];
+    }
+
+    static int[][] getAdjacencyMap(Face face) {
+        switch (face) {
+            case U:
+                return new int[][] { { 18, 19, 20 }, { 9, 10, 11 }, { 45, 46, 47 }, { 36, 37, 38 } };
+            case D:
+                return new int[][] { { 24, 25, 26 }, { 42, 43, 44 }, { 51, 52, 53 }, { 15, 16, 17 } };
+            case L:
+                return new int[][] { { 0, 3, 6 }, { 53, 50, 47 }, { 27, 30, 33 }, { 18, 21, 24 } };
+            case R:
+                return new int[][] { { 2, 5, 8 }, { 20, 23, 26 }, { 29, 32, 35 }, { 51, 48, 45 } };
+            case F:
+                return new int[][] { { 6, 7, 8 }, { 38, 41, 44 }, { 27, 28, 29 }, { 15, 12, 9 } };
+            case B:
+                return new int[][] { { 2, 1, 0 }, { 11, 14, 17 }, { 33, 34, 35 }, { 42, 39, 36 } };
+            default:
+                throw new IllegalArgumentException("Unknown face: " + face);
+        }
+    }
+
+    private void rotateFaceClockwise(Face face) {
+        // 1. Rotate the face stickers themselves
+        rotateFaceSurface(face);
+        // 2. Rotate the adjacent layers
+        rotateAdjacentLayers(face);
+    }
+
+    private void rotateFaceSurface(Face face) {
+        int offset = face.ordinal() * 9;
+        char[] temp = Arrays.copyOfRange(facelets, offset, offset + 9);
+        // 0 1 2 6 3 0
+        // 3 4 5 -> 7 4 1
+        // 6 7 8 8 5 2
+        facelets[offset + 0] = temp[6];
+        facelets[offset + 1] = temp[3];
+        facelets[offset + 2] = temp[0];
+        facelets[offset + 3] = temp[7];
+        facelets[offset + 4] = temp[4]; // Center unchanged
+        facelets[offset + 5] = temp[1];
+        facelets[offset + 6] = temp[8];
+        facelets[offset + 7] = temp[5];
+        facelets[offset + 8] = temp[2];
+    }
+
+    private void rotateAdjacentLayers(Face face) {
+        int[][] adj = getAdjacencyMap(face);
+        char[] temp = new char[3];
+        // Save adj[0]
+        for (int i = 0; i < 3; i++)
+            temp[i] = facelets[adj[0][i]];
+
+        // adj[0] = adj[1]
+        for (int i = 0; i < 3; i++) {
+            facelets[adj[0][i]] = facelets[adj[1][i]];
+        }
+
+        // adj[1] = adj[2]
+        for (int i = 0; i < 3; i++)
+            facelets[adj[1][i]] = facelets[adj[2][i]];
+
+        // adj[2] = adj[3]
+        for (int i = 0; i < 3; i++)
+            facelets[adj[2][i]] = facelets[adj[3][i]];
+
+        // adj[3] = temp
+        for (int i = 0; i < 3; i++)
+            facelets[adj[3][i]] = temp[i];
+    }
+}
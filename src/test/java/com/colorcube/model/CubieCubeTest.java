@@ -0,0 +1,94 @@
+package com.colorcube.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Covers the corrected F and B rings: every state the model reaches must be
+ * a cube, which the original rings in {@link BaselineCube} did not give.
+ */
+class CubieCubeTest {
+    private static final Move[] MOVES = Move.values();
+
+    @Test
+    void everyModelStateIsACube() {
+        Random random = new Random(3);
+        for (int run = 0; run < 200; run++) {
+            CubeModel model = new CubeModel();
+            CubieCube cubies = new CubieCube();
+            for (int i = 0; i < 30; i++) {
+                Move move = MOVES[random.nextInt(MOVES.length)];
+                model.applyMove(move);
+                cubies.move(move);
+            }
+            String facelets = model.getFaceletString();
+            assertTrue(CubieCube.isSolvable(facelets), facelets);
+            assertEquals(cubies, CubieCube.fromFacelets(facelets), "run " + run);
+            assertEquals(facelets, cubies.toFacelets(), "run " + run);
+        }
+    }
+
+    // On a solved cube the reversed stickers share a colour, so it takes a
+    // turn of another face first to show
+    @Test
+    void originalFAndBTurnsBreakCubies() {
+        for (Move first : new Move[] { Move.U, Move.R, Move.D, Move.L }) {
+            for (Move move : new Move[] { Move.F, Move.B }) {
+                BaselineCube baseline = new BaselineCube(CubeModel.SOLVED_STATE.toCharArray());
+                baseline.applyMove(first);
+                baseline.applyMove(move);
+                assertFalse(CubieCube.isSolvable(new String(baseline.facelets())), first + " " + move);
+
+                CubeModel model = new CubeModel();
+                model.applyMove(first);
+                model.applyMove(move);
+                assertTrue(CubieCube.isSolvable(model.getFaceletString()), first + " " + move);
+            }
+        }
+    }
+
+    // Sessions saved before the correction are still loadable if they never
+    // needed an F or B turn
+    @Test
+    void originalTurnsOfOtherFacesStayCubes() {
+        Random random = new Random(4);
+        Move[] unchanged = { Move.U, Move.R, Move.D, Move.L };
+        BaselineCube baseline = new BaselineCube(CubeModel.SOLVED_STATE.toCharArray());
+        for (int i = 0; i < 200; i++) {
+            baseline.applyMove(unchanged[random.nextInt(unchanged.length)]);
+            assertTrue(CubieCube.isSolvable(new String(baseline.facelets())), "step " + i);
+        }
+    }
+
+    // The correction only reorders stickers within the sides of each ring
+    @Test
+    void fAndBMoveTheSameStickersAsBefore() {
+        for (Move move : new Move[] { Move.F, Move.F_PRIME, Move.B, Move.B_PRIME }) {
+            int[] original = FaceletMoves.buildPermutation(move, BaselineCube.getAdjacencyMap(move.getFace()));
+            int[] corrected = FaceletMoves.permutation(move);
+            int offset = move.getFace().ordinal() * 9;
+            assertArrayEquals(Arrays.copyOfRange(original, offset, offset + 9),
+                    Arrays.copyOfRange(corrected, offset, offset + 9), move + " face");
+            for (int i = 0; i < FaceletMoves.FACELET_COUNT; i++) {
+                assertEquals(original[i] == i, corrected[i] == i, move + " facelet " + i);
+                assertEquals(original[i] / 9, corrected[i] / 9, move + " source face of " + i);
+            }
+        }
+    }
+
+    @Test
+    void isSolvableRejectsBadStrings() {
+        assertTrue(CubieCube.isSolvable(CubeModel.SOLVED_STATE));
+        assertFalse(CubieCube.isSolvable("too short"));
+        char[] swapped = CubeModel.SOLVED_STATE.toCharArray();
+        swapped[8] = swapped[9]; // U sticker of URF shows R
+        assertFalse(CubieCube.isSolvable(new String(swapped)));
+    }
+}
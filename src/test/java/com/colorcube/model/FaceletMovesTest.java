@@ -0,0 +1,107 @@
+package com.colorcube.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the move tables against the original rotation code in
+ * {@link BaselineCube}.
+ *
+ * The tables are built by the same rotation rules, so given the original
+ * rings they must reproduce the original turns exactly. The U, R, D and L
+ * rings are still the original ones, so those turns must also match through
+ * {@link FaceletMoves#apply} and {@link CubeModel}.
+ */
+class FaceletMovesTest {
+    private static final Move[] MOVES = Move.values();
+    private static final Move[] UNCHANGED = { Move.U, Move.R, Move.D, Move.L };
+
+    @Test
+    void tablesReproduceBaselineRules() {
+        for (Move move : MOVES) {
+            BaselineCube baseline = new BaselineCube(labelled());
+            if (move.getDir() == 1)
+                baseline.rotateClockwise(move.getFace());
+            else
+                baseline.rotateCounterClockwise(move.getFace());
+            int[] perm = FaceletMoves.buildPermutation(move, BaselineCube.getAdjacencyMap(move.getFace()));
+            assertArrayEquals(baseline.facelets(), permute(labelled(), perm), move.toString());
+        }
+    }
+
+    @Test
+    void unchangedFacesMatchBaseline() {
+        for (Move move : UNCHANGED) {
+            BaselineCube baseline = new BaselineCube(labelled());
+            baseline.rotateClockwise(move.getFace());
+            char[] actual = labelled();
+            FaceletMoves.apply(actual, move);
+            assertArrayEquals(baseline.facelets(), actual, move.toString());
+
+            baseline = new BaselineCube(labelled());
+            baseline.rotateCounterClockwise(move.getFace());
+            actual = labelled();
+            FaceletMoves.apply(actual, move.inverse());
+            assertArrayEquals(baseline.facelets(), actual, move.inverse().toString());
+        }
+    }
+
+    @Test
+    void inverseUndoesEveryMove() {
+        for (Move move : MOVES) {
+            char[] state = labelled();
+            FaceletMoves.apply(state, move);
+            FaceletMoves.apply(state, move.inverse());
+            assertArrayEquals(labelled(), state, move.toString());
+
+            char[] four = labelled();
+            for (int i = 0; i < 4; i++)
+                FaceletMoves.apply(four, move);
+            assertArrayEquals(labelled(), four, move + " x4");
+        }
+    }
+
+    // The original model only ever applied clockwise turns, and undid them
+    @Test
+    void cubeModelMatchesBaselineWithUndo() {
+        Random random = new Random(2);
+        CubeModel model = new CubeModel();
+        BaselineCube baseline = new BaselineCube(CubeModel.SOLVED_STATE.toCharArray());
+        int applied = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (applied > 0 && random.nextInt(4) == 0) {
+                model.undo();
+                baseline.undo();
+                applied--;
+            } else {
+                Move move = UNCHANGED[random.nextInt(UNCHANGED.length)];
+                model.applyMove(move);
+                baseline.applyMove(move);
+                applied++;
+            }
+            char[] expected = baseline.facelets();
+            assertEquals(new String(expected), model.getFaceletString(), "step " + i);
+            assertEquals(Zobrist.hash(expected), model.stateHash(), "hash at step " + i);
+        }
+    }
+
+    // Every facelet a different character, so any misplaced sticker shows
+    private static char[] labelled() {
+        char[] s = new char[FaceletMoves.FACELET_COUNT];
+        for (int i = 0; i < s.length; i++)
+            s[i] = (char) (0x100 + i);
+        return s;
+    }
+
+    // Facelet i takes what was at perm[i]
+    private static char[] permute(char[] s, int[] perm) {
+        char[] out = new char[s.length];
+        for (int i = 0; i < s.length; i++)
+            out[i] = s[perm[i]];
+        return out;
+    }
+}